@@ -0,0 +1,257 @@
+package com.example.kafka.benchmarks;
+
+import com.example.kafka.SchemaCache;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Representative value schemas and random records of them, shared by the benchmarks.
+ *
+ * <ul>
+ *   <li>{@code flat}: a dozen primitive, enum and logical-type fields</li>
+ *   <li>{@code wide}: 200 fields cycling through the primitive types</li>
+ *   <li>{@code nested}: eight levels of records, each with an array and a map</li>
+ *   <li>{@code arrays}: arrays of primitives, of records and of arrays</li>
+ *   <li>{@code unions}: nullable fields of every type and multi-branch unions, a third of them null</li>
+ * </ul>
+ *
+ * Records are generated from a fixed seed, so every run measures the same data. A scale
+ * multiplies string lengths and collection sizes to produce large payloads of the same shape.
+ */
+public final class BenchmarkData {
+
+    public static final String TOPIC = "benchmark";
+
+    private static final long SEED = 42;
+    private static final String[] PRIMITIVES = {"string", "long", "int", "double", "boolean", "float"};
+
+    private BenchmarkData() {
+    }
+
+    public static Schema schema(String shape) {
+        String json = switch (shape) {
+            case "flat" -> flatSchema();
+            case "wide" -> wideSchema(200);
+            case "nested" -> nestedSchema(8);
+            case "arrays" -> arraySchema();
+            case "unions" -> unionSchema();
+            default -> throw new IllegalArgumentException("Unknown schema shape: " + shape);
+        };
+        return new Schema.Parser().parse(json);
+    }
+
+    /** A schema cache backed by an in-process registry, as the CLIs would use a real one. */
+    public static SchemaCache schemaCache(SchemaRegistryClient registry) throws IOException {
+        return new SchemaCache(registry, "mock://benchmarks", null);
+    }
+
+    /** {@code count} random records of {@code schema}. */
+    public static List<Object> values(Schema schema, int count) {
+        return values(schema, count, 1);
+    }
+
+    /** {@code count} random records of {@code schema}, with strings and collections {@code scale} times as long. */
+    public static List<Object> values(Schema schema, int count, int scale) {
+        Random random = new Random(SEED);
+        List<Object> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(randomValue(schema, random, scale));
+        }
+        return values;
+    }
+
+    /** The values as the plain JSON lines the producer reads. */
+    public static List<String> jsonLines(List<Object> values) {
+        List<String> lines = new ArrayList<>(values.size());
+        for (Object value : values) {
+            lines.add(GenericData.get().toString(value));
+        }
+        return lines;
+    }
+
+    /**
+     * The values as consumed records with string keys and Confluent wire-format values, their
+     * schema registered in {@code registry}.
+     */
+    public static List<ConsumerRecord<byte[], byte[]>> consumerRecords(SchemaRegistryClient registry,
+                                                                       List<Object> values) {
+        return consumerRecords(registry, values, 1);
+    }
+
+    /** As {@link #consumerRecords(SchemaRegistryClient, List)}, dealt round-robin over partitions 0 to {@code partitions - 1}. */
+    public static List<ConsumerRecord<byte[], byte[]>> consumerRecords(SchemaRegistryClient registry,
+                                                                       List<Object> values, int partitions) {
+        try (KafkaAvroSerializer serializer = new KafkaAvroSerializer(registry)) {
+            List<ConsumerRecord<byte[], byte[]>> records = new ArrayList<>(values.size());
+            for (int i = 0; i < values.size(); i++) {
+                byte[] key = ("key-" + i).getBytes(StandardCharsets.UTF_8);
+                records.add(new ConsumerRecord<>(TOPIC, i % partitions, i / partitions, key,
+                        serializer.serialize(TOPIC, values.get(i))));
+            }
+            return records;
+        }
+    }
+
+    static Object randomValue(Schema schema, Random random, int scale) {
+        switch (schema.getType()) {
+            case RECORD:
+                GenericData.Record record = new GenericData.Record(schema);
+                for (Schema.Field field : schema.getFields()) {
+                    record.put(field.pos(), randomValue(field.schema(), random, scale));
+                }
+                return record;
+            case ARRAY:
+                int size = random.nextInt(5 * scale);
+                GenericData.Array<Object> array = new GenericData.Array<>(size, schema);
+                for (int i = 0; i < size; i++) {
+                    array.add(randomValue(schema.getElementType(), random, scale));
+                }
+                return array;
+            case MAP:
+                Map<String, Object> map = new HashMap<>();
+                int entries = random.nextInt(5 * scale);
+                for (int i = 0; i < entries; i++) {
+                    map.put(randomString(random, 1), randomValue(schema.getValueType(), random, scale));
+                }
+                return map;
+            case UNION:
+                List<Schema> types = schema.getTypes();
+                int first = types.get(0).getType() == Schema.Type.NULL ? 1 : 0;
+                if (first == 1 && random.nextInt(3) == 0) {
+                    return null;
+                }
+                return randomValue(types.get(first + random.nextInt(types.size() - first)), random, scale);
+            case ENUM:
+                List<String> symbols = schema.getEnumSymbols();
+                return new GenericData.EnumSymbol(schema, symbols.get(random.nextInt(symbols.size())));
+            case FIXED:
+                byte[] fixed = new byte[schema.getFixedSize()];
+                random.nextBytes(fixed);
+                return new GenericData.Fixed(schema, fixed);
+            case STRING:
+                return randomString(random, scale);
+            case BYTES:
+                byte[] bytes = new byte[random.nextInt(32)];
+                random.nextBytes(bytes);
+                return ByteBuffer.wrap(bytes);
+            case INT:
+                return random.nextInt(100_000);
+            case LONG:
+                return random.nextLong() >>> 20;
+            case FLOAT:
+                return random.nextFloat() * 1000;
+            case DOUBLE:
+                return random.nextDouble() * 1_000_000;
+            case BOOLEAN:
+                return random.nextBoolean();
+            default:
+                return null;
+        }
+    }
+
+    private static String randomString(Random random, int scale) {
+        char[] chars = new char[(5 + random.nextInt(20)) * scale];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    private static String flatSchema() {
+        return """
+                {"type": "record", "name": "Order", "namespace": "benchmark", "fields": [
+                  {"name": "id", "type": "long"},
+                  {"name": "customer", "type": "string"},
+                  {"name": "region", "type": "string"},
+                  {"name": "status", "type": {"type": "enum", "name": "Status",
+                    "symbols": ["NEW", "PAID", "SHIPPED", "FAILED"]}},
+                  {"name": "quantity", "type": "int"},
+                  {"name": "price", "type": "double"},
+                  {"name": "discount", "type": "float"},
+                  {"name": "gift", "type": "boolean"},
+                  {"name": "created", "type": {"type": "long", "logicalType": "timestamp-millis"}},
+                  {"name": "updated", "type": {"type": "long", "logicalType": "timestamp-millis"}},
+                  {"name": "note", "type": "string"},
+                  {"name": "checksum", "type": {"type": "fixed", "name": "Checksum", "size": 16}}
+                ]}""";
+    }
+
+    private static String wideSchema(int fields) {
+        StringBuilder json = new StringBuilder("{\"type\": \"record\", \"name\": \"Wide\", \"namespace\": \"benchmark\", \"fields\": [");
+        for (int i = 0; i < fields; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"name\": \"field").append(i).append("\", \"type\": \"")
+                    .append(PRIMITIVES[i % PRIMITIVES.length]).append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String nestedSchema(int depth) {
+        String level = null;
+        for (int i = depth - 1; i >= 0; i--) {
+            StringBuilder json = new StringBuilder("{\"type\": \"record\", \"name\": \"Level").append(i)
+                    .append("\", \"namespace\": \"benchmark\", \"fields\": [")
+                    .append("{\"name\": \"id\", \"type\": \"long\"},")
+                    .append("{\"name\": \"name\", \"type\": \"string\"},")
+                    .append("{\"name\": \"weight\", \"type\": \"double\"},")
+                    .append("{\"name\": \"tags\", \"type\": {\"type\": \"array\", \"items\": \"string\"}},")
+                    .append("{\"name\": \"attributes\", \"type\": {\"type\": \"map\", \"values\": \"long\"}}");
+            if (level != null) {
+                json.append(",{\"name\": \"child\", \"type\": ").append(level).append('}');
+            }
+            level = json.append("]}").toString();
+        }
+        return level;
+    }
+
+    private static String arraySchema() {
+        return """
+                {"type": "record", "name": "Batch", "namespace": "benchmark", "fields": [
+                  {"name": "id", "type": "long"},
+                  {"name": "ids", "type": {"type": "array", "items": "long"}},
+                  {"name": "scores", "type": {"type": "array", "items": "double"}},
+                  {"name": "names", "type": {"type": "array", "items": "string"}},
+                  {"name": "items", "type": {"type": "array", "items": {"type": "record", "name": "Item", "fields": [
+                    {"name": "sku", "type": "string"},
+                    {"name": "quantity", "type": "int"},
+                    {"name": "price", "type": "double"},
+                    {"name": "tags", "type": {"type": "array", "items": "string"}}
+                  ]}}},
+                  {"name": "matrix", "type": {"type": "array", "items": {"type": "array", "items": "int"}}}
+                ]}""";
+    }
+
+    private static String unionSchema() {
+        StringBuilder json = new StringBuilder("{\"type\": \"record\", \"name\": \"Change\", \"namespace\": \"benchmark\", \"fields\": [");
+        json.append("{\"name\": \"op\", \"type\": \"string\"}");
+        for (int i = 0; i < 12; i++) {
+            json.append(",{\"name\": \"before").append(i).append("\", \"type\": [\"null\", \"")
+                    .append(PRIMITIVES[i % PRIMITIVES.length]).append("\"], \"default\": null}");
+            json.append(",{\"name\": \"after").append(i).append("\", \"type\": [\"null\", \"")
+                    .append(PRIMITIVES[i % PRIMITIVES.length]).append("\"], \"default\": null}");
+        }
+        for (int i = 0; i < 4; i++) {
+            json.append(",{\"name\": \"any").append(i)
+                    .append("\", \"type\": [\"null\", \"string\", \"long\", \"double\", \"boolean\"], \"default\": null}");
+        }
+        json.append(",{\"name\": \"source\", \"type\": [\"null\", {\"type\": \"record\", \"name\": \"Source\", \"fields\": [")
+                .append("{\"name\": \"table\", \"type\": \"string\"},")
+                .append("{\"name\": \"lsn\", \"type\": [\"null\", \"long\"], \"default\": null}]}], \"default\": null}");
+        json.append(",{\"name\": \"keys\", \"type\": [\"null\", {\"type\": \"array\", \"items\": [\"null\", \"string\"]}], \"default\": null}");
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.kafka.benchmarks;
+
+import com.example.kafka.AvroDecoder;
+import com.example.kafka.BinaryFrameFormatter;
+import com.example.kafka.ConsumeLoop;
+import com.example.kafka.JsonFormatter;
+import com.example.kafka.OutputPipeline;
+import com.example.kafka.RawFormatter;
+import com.example.kafka.RecordFormatter;
+import com.example.kafka.RecordProcessor;
+import com.example.kafka.SchemaCache;
+import com.example.kafka.StreamSink;
+import com.fasterxml.jackson.core.JsonFactory;
+import io.confluent.kafka.schemaregistry.client.MockSchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import org.apache.avro.Schema;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Records per second through the whole consumer pipeline without a broker: poll, decode,
+ * format and write.
+ *
+ * A {@link MockConsumer} hands out pre-generated Confluent wire-format records, dealt
+ * round-robin over {@code partitions}, in batches of {@code max.poll.records}, so each batch
+ * holds records of every partition for the workers to share. Schemas come from an
+ * in-process registry, and a {@link ConsumeLoop} writes the records through a
+ * {@link StreamSink} and {@link OutputPipeline} into a discarding channel, exactly as the
+ * CLI wires them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(ConsumePipelineBenchmark.RECORDS)
+public class ConsumePipelineBenchmark {
+
+    static final int RECORDS = 20_000;
+
+    @Param({"flat", "wide", "nested", "unions"})
+    public String shape;
+
+    @Param({"json", "raw", "binary"})
+    public String output;
+
+    @Param({"0", "4"})
+    public int workers;
+
+    @Param({"4"})
+    public int partitions;
+
+    @Param({"500"})
+    public int maxPollRecords;
+
+    private List<ConsumerRecord<byte[], byte[]>> records;
+    private List<TopicPartition> assignment;
+    private Map<TopicPartition, Long> beginningOffsets;
+    private StreamSink sink;
+
+    @Setup
+    public void setUp() throws IOException {
+        Schema schema = BenchmarkData.schema(shape);
+        SchemaRegistryClient registry = new MockSchemaRegistryClient();
+        SchemaCache schemas = BenchmarkData.schemaCache(registry);
+        records = BenchmarkData.consumerRecords(registry, BenchmarkData.values(schema, RECORDS), partitions);
+        assignment = new ArrayList<>();
+        beginningOffsets = new HashMap<>();
+        for (int p = 0; p < partitions; p++) {
+            TopicPartition partition = new TopicPartition(BenchmarkData.TOPIC, p);
+            assignment.add(partition);
+            beginningOffsets.put(partition, 0L);
+        }
+
+        JsonFactory jsonFactory = new JsonFactory();
+        Supplier<RecordFormatter> formatters = switch (output) {
+            case "json" -> () -> new JsonFormatter(jsonFactory);
+            case "binary" -> BinaryFrameFormatter::new;
+            default -> RawFormatter::new;
+        };
+        StringDeserializer keyDeserializer = new StringDeserializer();
+        sink = new StreamSink(new OutputPipeline(Channels.newChannel(OutputStream.nullOutputStream())),
+                () -> new RecordProcessor(keyDeserializer, AvroDecoder.plain(schemas, true), null, formatters.get()),
+                workers);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sink.close();
+    }
+
+    @Benchmark
+    public long consume() throws IOException {
+        MockConsumer<byte[], byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(assignment);
+        consumer.updateBeginningOffsets(beginningOffsets);
+        // Each poll runs one task, so every poll returns one batch.
+        for (int start = 0; start < RECORDS; start += maxPollRecords) {
+            List<ConsumerRecord<byte[], byte[]>> batch = records.subList(start, Math.min(start + maxPollRecords, RECORDS));
+            consumer.schedulePollTask(() -> batch.forEach(consumer::addRecord));
+        }
+        ConsumeLoop loop = new ConsumeLoop(consumer, sink, RECORDS, 0, false);
+        loop.run();
+        return loop.records();
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.kafka.benchmarks;
+
+import com.example.kafka.AvroDecoder;
+import com.example.kafka.BinaryFrameFormatter;
+import com.example.kafka.JsonFormatter;
+import com.example.kafka.RawFormatter;
+import com.example.kafka.RecordFormatter;
+import com.example.kafka.RecordProcessor;
+import com.example.kafka.SchemaCache;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.confluent.kafka.schemaregistry.client.MockSchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.kafka.serializers.KafkaAvroDeserializer;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-record cost of the consumer, from Confluent wire-format bytes to formatted output.
+ *
+ * {@code objectNodeReadTree} and {@code printlnToString} are the consumer's original paths:
+ * a {@code KafkaAvroDeserializer} over the same in-process registry decodes a fresh record per
+ * value, which is rendered through {@code toString()} and, for JSON, re-parsed into an
+ * {@code ObjectNode} tree before being serialized again and printed. The others run the
+ * current {@link RecordProcessor} with each formatter, decoding into reused records. All write
+ * to a discarding stream, so only the tool's own work is measured.
+ *
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar ConsumerFormatBenchmark -prof gc}
+ * for allocation per record alongside the timings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsumerFormatBenchmark {
+
+    /** Records cycled through; a power of two. */
+    private static final int RECORDS = 1024;
+
+    @Param({"flat", "wide", "nested", "unions"})
+    public String shape;
+
+    private List<ConsumerRecord<byte[], byte[]>> records;
+    private int next;
+
+    private final OutputStream out = OutputStream.nullOutputStream();
+    private final PrintStream printStream = new PrintStream(
+            new BufferedOutputStream(OutputStream.nullOutputStream(), 8192), false, StandardCharsets.UTF_8);
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final StringDeserializer keyDeserializer = new StringDeserializer();
+    private KafkaAvroDeserializer originalDeserializer;
+
+    private RecordProcessor json;
+    private RecordProcessor raw;
+    private RecordProcessor binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        Schema schema = BenchmarkData.schema(shape);
+        SchemaRegistryClient registry = new MockSchemaRegistryClient();
+        SchemaCache schemas = BenchmarkData.schemaCache(registry);
+        records = BenchmarkData.consumerRecords(registry, BenchmarkData.values(schema, RECORDS));
+        originalDeserializer = new KafkaAvroDeserializer(registry);
+        JsonFactory jsonFactory = new JsonFactory();
+        json = processor(schemas, new JsonFormatter(jsonFactory));
+        raw = processor(schemas, new RawFormatter());
+        binary = processor(schemas, new BinaryFrameFormatter());
+    }
+
+    private RecordProcessor processor(SchemaCache schemas, RecordFormatter formatter) {
+        return new RecordProcessor(keyDeserializer, AvroDecoder.plain(schemas, true), null, formatter);
+    }
+
+    private ConsumerRecord<byte[], byte[]> nextRecord() {
+        ConsumerRecord<byte[], byte[]> record = records.get(next);
+        next = (next + 1) & (RECORDS - 1);
+        return record;
+    }
+
+    @Benchmark
+    public void objectNodeReadTree() throws IOException {
+        ConsumerRecord<byte[], byte[]> record = nextRecord();
+        String key = keyDeserializer.deserialize(record.topic(), record.key());
+        Object value = originalDeserializer.deserialize(record.topic(), record.value());
+
+        ObjectNode root = mapper.createObjectNode();
+        root.put("topic", record.topic());
+        root.put("partition", record.partition());
+        root.put("offset", record.offset());
+        root.put("timestamp", record.timestamp());
+        if (key != null) root.put("key", key);
+        if (value instanceof GenericRecord) {
+            JsonNode valueNode = mapper.readTree(value.toString());
+            root.set("value", valueNode);
+        } else if (value != null) {
+            root.put("value", value.toString());
+        }
+        printStream.println(mapper.writeValueAsString(root));
+    }
+
+    @Benchmark
+    public void printlnToString() {
+        ConsumerRecord<byte[], byte[]> record = nextRecord();
+        printStream.println(originalDeserializer.deserialize(record.topic(), record.value()));
+    }
+
+    @Benchmark
+    public void jsonFormatter() throws IOException {
+        json.process(nextRecord(), out);
+    }
+
+    @Benchmark
+    public void rawFormatter() throws IOException {
+        raw.process(nextRecord(), out);
+    }
+
+    @Benchmark
+    public void binaryFrameFormatter() throws IOException {
+        binary.process(nextRecord(), out);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.kafka.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * The producer's original JSON-to-Avro conversion, which dispatched on the schema for every
+ * value of every line, kept verbatim as the baseline for the compiled converter.
+ */
+final class InterpretedJsonToAvro {
+
+    private InterpretedJsonToAvro() {
+    }
+
+    static Object convert(JsonNode json, Schema schema) {
+        if (json.isNull()) return null;
+
+        switch (schema.getType()) {
+            case RECORD:
+                GenericRecord record = new GenericData.Record(schema);
+                for (Schema.Field field : schema.getFields()) {
+                    JsonNode fieldJson = json.get(field.name());
+                    if (fieldJson == null) {
+                        if (field.defaultVal() != null) {
+                            // This is a simplification. Avro defaults are complex to handle manually.
+                            // Ideally, use a library like avro-json-decoder if available, but for now we skip or error.
+                            // For this simple CLI, we'll assume the JSON must match.
+                            continue;
+                        }
+                        continue;
+                    }
+                    record.put(field.name(), convert(fieldJson, field.schema()));
+                }
+                return record;
+            case ARRAY:
+                GenericData.Array<Object> array = new GenericData.Array<>(json.size(), schema);
+                for (JsonNode element : json) {
+                    array.add(convert(element, schema.getElementType()));
+                }
+                return array;
+            case STRING:
+                return json.asText();
+            case INT:
+                return json.asInt();
+            case LONG:
+                return json.asLong();
+            case FLOAT:
+                return (float) json.asDouble();
+            case DOUBLE:
+                return json.asDouble();
+            case BOOLEAN:
+                return json.asBoolean();
+            case UNION:
+                // Simple union handling: try the first non-null type that matches
+                for (Schema subSchema : schema.getTypes()) {
+                    if (subSchema.getType() == Schema.Type.NULL) continue;
+                    try {
+                        return convert(json, subSchema);
+                    } catch (Exception ignored) {}
+                }
+                return null;
+            default:
+                return json.asText();
+        }
+    }
+}
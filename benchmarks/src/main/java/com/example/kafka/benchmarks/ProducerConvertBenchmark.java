@@ -0,0 +1,103 @@
+package com.example.kafka.benchmarks;
+
+import com.example.kafka.JsonAvroConverter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-line cost of the producer turning a JSON input line into an Avro value.
+ *
+ * {@code parseAndRead} is everything the producer does with a line before {@code send}:
+ * the converter reads the parser's tokens directly. {@code parseAndReadFresh} reads without
+ * reusing containers. {@code readTreeAndInterpret} is the original path, parsing a
+ * {@code JsonNode} tree and converting it with the schema-interpreting conversion, and
+ * {@code readTree} the tree parsing alone. Large payloads have strings and collections
+ * eight times as long.
+ *
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar ProducerConvertBenchmark -prof gc}
+ * for allocation per line alongside the timings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProducerConvertBenchmark {
+
+    /** Lines cycled through; a power of two. */
+    private static final int LINES = 256;
+
+    @Param({"flat", "nested", "arrays", "unions"})
+    public String shape;
+
+    @Param({"small", "large"})
+    public String payload;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private Schema schema;
+    private JsonAvroConverter converter;
+    private JsonAvroConverter freshConverter;
+    private List<String> lines;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        schema = BenchmarkData.schema(shape);
+        converter = JsonAvroConverter.compile(schema, true);
+        freshConverter = JsonAvroConverter.compile(schema, false);
+        int scale = "large".equals(payload) ? 8 : 1;
+        lines = BenchmarkData.jsonLines(BenchmarkData.values(schema, LINES, scale));
+    }
+
+    private String nextLine() {
+        String line = lines.get(next);
+        next = (next + 1) & (LINES - 1);
+        return line;
+    }
+
+    @Benchmark
+    public Object parseAndRead() throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(nextLine())) {
+            parser.nextToken();
+            return converter.read(parser);
+        }
+    }
+
+    @Benchmark
+    public Object parseAndReadFresh() throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(nextLine())) {
+            parser.nextToken();
+            return freshConverter.read(parser);
+        }
+    }
+
+    @Benchmark
+    public JsonNode readTree() throws IOException {
+        return mapper.readTree(nextLine());
+    }
+
+    @Benchmark
+    public Object readTreeAndInterpret() throws IOException {
+        return InterpretedJsonToAvro.convert(mapper.readTree(nextLine()), schema);
+    }
+}
@@ -1,28 +1,81 @@
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import io.confluent.kafka.serializers.KafkaAvroDeserializer;
-import io.confluent.kafka.serializers.KafkaAvroDeserializerConfig;
+import com.example.kafka.AvroDecoder;
+import com.example.kafka.AvroFileSink;
+import com.example.kafka.BinaryFrameFormatter;
+import com.example.kafka.ConsumeLoop;
+import com.example.kafka.FieldProjection;
+import com.example.kafka.FreshnessStats;
+import com.example.kafka.JsonFormatter;
+import com.example.kafka.LogHistogram;
+import com.example.kafka.MetricsServer;
+import com.example.kafka.OutputPipeline;
+import com.example.kafka.RawFormatter;
+import com.example.kafka.RecordFilter;
+import com.example.kafka.RecordFormatter;
+import com.example.kafka.RecordProcessor;
+import com.example.kafka.RecordSink;
+import com.example.kafka.RoutingSink;
+import com.example.kafka.SchemaCache;
+import com.example.kafka.StreamSink;
+import com.example.kafka.TopicExport;
+import com.fasterxml.jackson.core.JsonFactory;
+import io.confluent.kafka.schemaregistry.client.CachedSchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
 import net.sourceforge.argparse4j.ArgumentParsers;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.MutuallyExclusiveGroup;
 import net.sourceforge.argparse4j.inf.Namespace;
-import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 
+import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public class AvroKafkaConsumer {
 
+    /** Longest a consumer may take to commit and leave its group when closed. */
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    /** Longest a Ctrl+C or SIGTERM waits for output to drain and the consumer to close. */
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+    /** Output buffer size when records are split over many files that are open at once. */
+    private static final int FILE_BUFFER_SIZE = 256 * 1024;
+
     public static void main(String[] args) {
         ArgumentParser parser = ArgumentParsers.newFor("AvroKafkaConsumer").build()
                 .defaultHelp(true)
@@ -34,9 +87,11 @@ public class AvroKafkaConsumer {
         parser.addArgument("--consumer-config")
                 .help("Path to a properties file containing consumer configuration (SSL, Schema Registry, etc).");
 
-        parser.addArgument("--topic")
-                .required(true)
-                .help("The topic to consume from");
+        MutuallyExclusiveGroup topics = parser.addMutuallyExclusiveGroup().required(true);
+        topics.addArgument("--topic")
+                .help("The topic to consume from, or a comma-separated list of topics.");
+        topics.addArgument("--include")
+                .help("Consume every topic matching this regular expression, including topics created later.");
 
         parser.addArgument("--group")
                 .help("The consumer group ID. Defaults to a random UUID.");
@@ -45,14 +100,128 @@ public class AvroKafkaConsumer {
                 .action(net.sourceforge.argparse4j.impl.Arguments.storeTrue())
                 .help("Start from earliest offset.");
 
+        parser.addArgument("--from-time")
+                .help("Read each partition from its first record at or after this time "
+                        + "(ISO-8601 instant or epoch milliseconds).");
+
+        parser.addArgument("--to-time")
+                .help("Stop each partition at its first record after this time "
+                        + "(ISO-8601 instant or epoch milliseconds).");
+
         parser.addArgument("--property")
                 .nargs("*")
                 .help("Custom properties. Overrides config file values.");
 
         parser.addArgument("--output")
-                .choices("json", "raw")
+                .choices("json", "raw", "binary", "avro")
                 .setDefault("raw")
-                .help("Output format. 'json' wraps metadata and value in a JSON object.");
+                .help("Output format. 'json' wraps metadata and value in a JSON object. "
+                        + "'binary' writes length-prefixed frames of the undecoded key and value bytes. "
+                        + "'avro' writes values into Avro container files named after --output-file.");
+
+        parser.addArgument("--codec")
+                .choices("null", "deflate", "snappy", "zstd")
+                .setDefault("deflate")
+                .help("Block compression codec for --output avro.");
+
+        parser.addArgument("--sync-interval")
+                .type(Integer.class)
+                .setDefault(DataFileConstants.DEFAULT_SYNC_INTERVAL)
+                .help("Approximate uncompressed block size in bytes for --output avro.");
+
+        MutuallyExclusiveGroup projection = parser.addMutuallyExclusiveGroup();
+        projection.addArgument("--fields")
+                .help("Comma-separated field paths to decode, e.g. a,b.c,d. Other fields are skipped undecoded.");
+        projection.addArgument("--reader-schema")
+                .help("Path to an Avro reader schema to decode values into.");
+
+        parser.addArgument("--schema-cache")
+                .help("Directory to persist fetched schemas in, so later runs need no Schema Registry lookups for them.");
+
+        parser.addArgument("--filter")
+                .help("Only output records matching this expression, e.g. "
+                        + "'value.status == \"FAILED\" && key startsWith \"eu-\"'.");
+
+        parser.addArgument("--workers")
+                .type(Integer.class)
+                .setDefault(0)
+                .help("Decode and format partitions on this many threads, keeping per-partition order. 0 uses the poll thread.");
+
+        parser.addArgument("--output-file")
+                .help("Write records to this file instead of stdout.");
+
+        parser.addArgument("--output-dir")
+                .help("Write each topic's records to its own file in this directory.");
+
+        parser.addArgument("--flush-bytes")
+                .type(Integer.class)
+                .setDefault(0)
+                .help("Hand output to the writer once this many bytes are buffered. 0 flushes after every poll.");
+
+        parser.addArgument("--flush-ms")
+                .type(Integer.class)
+                .setDefault(0)
+                .help("Hand buffered output to the writer at least this often. 0 flushes after every poll.");
+
+        parser.addArgument("--export")
+                .metavar("DIR")
+                .help("Export a snapshot of the topic up to its current end offsets into DIR, "
+                        + "one <topic>-<partition> file per partition, then exit.");
+
+        parser.addArgument("--export-threads")
+                .type(Integer.class)
+                .setDefault(4)
+                .help("Consumers to export partitions with in parallel.");
+
+        parser.addArgument("--export-split")
+                .type(Integer.class)
+                .setDefault(1)
+                .help("Split partitions holding more than an even share of the export into up to "
+                        + "this many offset ranges, each read by its own consumer.");
+
+        parser.addArgument("--commit-interval")
+                .type(Long.class)
+                .setDefault(0L)
+                .help("Commit offsets at most this often (ms), and only for records whose output has been "
+                        + "flushed and, for files, fsynced. 0 leaves committing to enable.auto.commit.");
+
+        parser.addArgument("--stats-interval")
+                .type(Long.class)
+                .setDefault(0L)
+                .help("Print throughput, poll-to-output latency, output backlog, per-partition lag and "
+                        + "record-timestamp-to-output latency percentiles to stderr this often (ms). 0 disables.");
+
+        parser.addArgument("--slo-ms")
+                .type(Long.class)
+                .setDefault(0L)
+                .help("Stop and exit with status 2 as soon as more records than --slo-percentile allows have "
+                        + "taken longer than this from their timestamp to being output (ms). 0 disables.");
+
+        parser.addArgument("--slo-percentile")
+                .type(Double.class)
+                .setDefault(100.0)
+                .help("Percentage of all records so far that must be output within --slo-ms. "
+                        + "At 100 a single late record breaches the SLO.");
+
+        parser.addArgument("--metrics-port")
+                .type(Integer.class)
+                .setDefault(0)
+                .help("Serve consumer and Kafka client metrics in the OpenMetrics format on "
+                        + "http://<host>:<port>/metrics. 0 disables.");
+
+        parser.addArgument("--max-messages")
+                .type(Long.class)
+                .setDefault(0L)
+                .help("Exit after this many records. 0 consumes without limit.");
+
+        parser.addArgument("--idle-timeout")
+                .type(Long.class)
+                .setDefault(0L)
+                .help("Exit after this many milliseconds without records. 0 waits forever.");
+
+        parser.addArgument("--until-end")
+                .action(net.sourceforge.argparse4j.impl.Arguments.storeTrue())
+                .help("Exit once every assigned partition reaches the end offset it had when assigned.");
 
         Namespace ns = null;
         try {
@@ -62,6 +231,38 @@ public class AvroKafkaConsumer {
             System.exit(1);
         }
 
+        List<String> topicList = null;
+        Pattern topicPattern = null;
+        if (ns.getString("topic") != null) {
+            topicList = new ArrayList<>();
+            for (String topic : ns.getString("topic").split(",")) {
+                if (!topic.isBlank()) {
+                    topicList.add(topic.trim());
+                }
+            }
+        } else {
+            try {
+                topicPattern = Pattern.compile(ns.getString("include"));
+            } catch (PatternSyntaxException e) {
+                System.err.println("Error: invalid --include pattern: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        String outputDir = ns.getString("output_dir");
+        if (outputDir != null && ns.getString("output_file") != null) {
+            System.err.println("Error: --output-file and --output-dir cannot be combined.");
+            System.exit(1);
+        }
+
+        Long fromTime = parseTime(ns.getString("from_time"));
+        Long toTime = parseTime(ns.getString("to_time"));
+        boolean timeRange = fromTime != null || toTime != null;
+        String exportDir = ns.getString("export");
+        if (exportDir != null && timeRange) {
+            System.err.println("Error: --export cannot be combined with --from-time or --to-time.");
+            System.exit(1);
+        }
+
         // 1. Initialize Properties
         Properties props = new Properties();
 
@@ -120,57 +321,436 @@ public class AvroKafkaConsumer {
             props.put("security.protocol", "SSL");
         }
 
+        // Records are fetched as raw bytes and decoded off the consumer, so decoding can run on worker threads.
         String schemaRegistryUrl = props.getProperty("schema.registry.url");
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+
+        // Every sink consumes a decoded value before the next one is decoded, so records can be reused.
+        SchemaCache schemaCache = null;
+        Supplier<Deserializer<?>> valueDeserializers;
+        RecordFilter filter = null;
+        List<String> filterPaths = List.of();
+        if (ns.getString("filter") != null) {
+            try {
+                filter = RecordFilter.compile(ns.getString("filter"));
+                filterPaths = RecordFilter.valuePaths(ns.getString("filter"));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error: " + e.getMessage());
+                System.exit(1);
+            }
+        }
 
         if (schemaRegistryUrl != null) {
-            props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, KafkaAvroDeserializer.class.getName());
-            props.put(KafkaAvroDeserializerConfig.SCHEMA_REGISTRY_URL_CONFIG, schemaRegistryUrl);
-            props.put(KafkaAvroDeserializerConfig.SPECIFIC_AVRO_READER_CONFIG, "false");
+            Map<String, Object> registryConfig = new HashMap<>();
+            props.forEach((k, v) -> registryConfig.put(k.toString(), v));
+            SchemaRegistryClient schemaRegistry = new CachedSchemaRegistryClient(schemaRegistryUrl, 1000, registryConfig);
+            String cacheDir = ns.getString("schema_cache");
+            try {
+                schemaCache = new SchemaCache(schemaRegistry, schemaRegistryUrl, cacheDir != null ? Paths.get(cacheDir) : null);
+            } catch (IOException e) {
+                System.err.println("Error opening schema cache: " + e.getMessage());
+                System.exit(1);
+            }
+            SchemaCache schemas = schemaCache;
+
+            if (ns.getString("fields") != null) {
+                FieldProjection fields = FieldProjection.parse(ns.getString("fields"));
+                // Fields outside the projection are never decoded, so the filter would only ever see null.
+                for (String path : filterPaths) {
+                    if (!fields.covers(path)) {
+                        System.err.println("Error: --filter reads value." + path + ", which --fields does not decode.");
+                        System.exit(1);
+                    }
+                }
+                valueDeserializers = () -> AvroDecoder.projecting(schemas, fields, true);
+            } else if (ns.getString("reader_schema") != null) {
+                Schema readerSchema = null;
+                try {
+                    readerSchema = new Schema.Parser().parse(new File(ns.getString("reader_schema")));
+                } catch (IOException e) {
+                    System.err.println("Error reading schema file: " + e.getMessage());
+                    System.exit(1);
+                }
+                for (String path : filterPaths) {
+                    if (!RecordFilter.resolves(path, readerSchema)) {
+                        System.err.println("Error: --filter reads value." + path + ", which --reader-schema does not have.");
+                        System.exit(1);
+                    }
+                }
+                Schema reader = readerSchema;
+                valueDeserializers = () -> new AvroDecoder(schemas, writer -> reader, true);
+            } else {
+                valueDeserializers = () -> AvroDecoder.plain(schemas, true);
+            }
         } else {
-            props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+            if (ns.getString("fields") != null || ns.getString("reader_schema") != null) {
+                System.err.println("Error: --fields and --reader-schema require Schema Registry.");
+                System.exit(1);
+            }
+            StringDeserializer deserializer = new StringDeserializer();
+            valueDeserializers = () -> deserializer;
+        }
+        boolean projected = ns.getString("fields") != null || ns.getString("reader_schema") != null;
+
+        long commitInterval = ns.getLong("commit_interval");
+        if (commitInterval > 0) {
+            if (timeRange || exportDir != null) {
+                System.err.println("Error: --commit-interval cannot be combined with --export, --from-time or --to-time.");
+                System.exit(1);
+            }
+            props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        } else if ((timeRange || exportDir != null) && !props.containsKey(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG)) {
+            // Time-range reads and exports are one-off extracts and must not move the group's offsets.
+            props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        }
+
+        int workers = ns.getInt("workers");
+        if (workers > 0 && !props.containsKey(ConsumerConfig.MAX_POLL_RECORDS_CONFIG)) {
+            // Larger batches give every partition task enough records to amortize the hand-off.
+            props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "5000");
+        }
+
+        RecordFilter recordFilter = filter;
+        StringDeserializer keyDeserializer = new StringDeserializer();
+
+        int metricsPort = ns.getInt("metrics_port");
+        long sloMs = ns.getLong("slo_ms");
+        double sloPercentile = ns.getDouble("slo_percentile");
+        if ((metricsPort > 0 || sloMs > 0) && exportDir != null) {
+            System.err.println("Error: --metrics-port and --slo-ms cannot be combined with --export.");
+            System.exit(1);
+        }
+        if (sloPercentile <= 0 || sloPercentile > 100) {
+            System.err.println("Error: --slo-percentile must be greater than 0 and at most 100.");
+            System.exit(1);
+        }
+        FreshnessStats freshness = null;
+        if (sloMs > 0 || metricsPort > 0 || ns.getLong("stats_interval") > 0) {
+            freshness = new FreshnessStats(sloMs, sloPercentile);
+        }
+        LogHistogram decodeNanos = metricsPort > 0 ? new LogHistogram() : null;
+        LogHistogram formatNanos = metricsPort > 0 ? new LogHistogram() : null;
+
+        // 5. Output Sink
+        String outputFormat = ns.getString("output");
+        boolean avroOutput = "avro".equals(outputFormat);
+        if (avroOutput && (schemaCache == null || (ns.getString("output_file") == null && outputDir == null && exportDir == null))) {
+            System.err.println("Error: --output avro requires Schema Registry and --output-file, --output-dir or --export.");
+            System.exit(1);
+        }
+        SchemaCache schemas = schemaCache;
+        CodecFactory codec = AvroFileSink.codec(ns.getString("codec"));
+        int syncInterval = ns.getInt("sync_interval");
+        Function<File, AvroFileSink> avroSinks = file -> new AvroFileSink(file, codec, syncInterval, schemas,
+                projected ? (AvroDecoder) valueDeserializers.get() : null, recordFilter, keyDeserializer);
+
+        JsonFactory jsonFactory = new JsonFactory();
+        Supplier<RecordFormatter> formatterFactory = switch (outputFormat) {
+            case "json" -> () -> new JsonFormatter(jsonFactory);
+            case "binary" -> BinaryFrameFormatter::new;
+            default -> RawFormatter::new;
+        };
+        Supplier<RecordProcessor> processorFactory = () -> new RecordProcessor(
+                keyDeserializer, valueDeserializers.get(), recordFilter, formatterFactory.get(), decodeNanos, formatNanos);
+
+        if (exportDir != null) {
+            exportTopics(props, topicList, topicPattern, exportDir, ns.getInt("export_threads"),
+                    ns.getInt("export_split"), outputFormat, range -> {
+                String name = range.partition().topic() + "-" + range.partition().partition();
+                if (avroOutput) {
+                    // Avro files of a split partition sort by their start offset and are kept as they are.
+                    String stem = range.whole() ? name : String.format("%s-%020d", name, range.begin());
+                    return avroSinks.apply(new File(exportDir, stem + ".avro"));
+                }
+                // Exports favour throughput over latency, so only full buffers are handed to the writer.
+                OutputPipeline pipeline = openPipeline(exportPath(exportDir, name + "." + outputFormat, range).toString(),
+                        FILE_BUFFER_SIZE, 2, FILE_BUFFER_SIZE, 0);
+                return new StreamSink(pipeline, processorFactory, 0);
+            });
+            return;
         }
 
-        // 5. Consumption Loop
-        boolean isJsonOutput = "json".equals(ns.getString("output"));
-        ObjectMapper mapper = new ObjectMapper();
+        OutputPipeline output = null;
+        ForkJoinPool workerPool = null;
+        RecordSink sink;
+        if (outputDir != null) {
+            try {
+                Files.createDirectories(Paths.get(outputDir));
+            } catch (IOException e) {
+                System.err.println("Error creating output directory: " + e.getMessage());
+                System.exit(1);
+            }
+            // Every topic gets its own file, pipeline and decoders, but all share one worker pool.
+            int flushBytes = ns.getInt("flush_bytes");
+            int flushMs = ns.getInt("flush_ms");
+            ForkJoinPool topicWorkers = workers > 0 ? new ForkJoinPool(workers) : null;
+            workerPool = topicWorkers;
+            sink = new RoutingSink<>(TopicPartition::topic, topic -> {
+                if (avroOutput) {
+                    return avroSinks.apply(new File(outputDir, topic + ".avro"));
+                }
+                OutputPipeline pipeline = openPipeline(Paths.get(outputDir, topic + "." + outputFormat).toString(),
+                        FILE_BUFFER_SIZE, 2, flushBytes, flushMs);
+                return new StreamSink(pipeline, processorFactory, topicWorkers);
+            });
+        } else if (avroOutput) {
+            sink = avroSinks.apply(new File(ns.getString("output_file")));
+        } else {
+            try {
+                output = openPipeline(ns.getString("output_file"),
+                        OutputPipeline.DEFAULT_BUFFER_SIZE, OutputPipeline.DEFAULT_BUFFER_COUNT,
+                        ns.getInt("flush_bytes"), ns.getInt("flush_ms"));
+            } catch (IOException e) {
+                System.err.println("Error opening output file: " + e.getMessage());
+                System.exit(1);
+            }
+            sink = new StreamSink(output, processorFactory, workers);
+        }
 
-        try (KafkaConsumer<String, Object> consumer = new KafkaConsumer<>(props)) {
-            consumer.subscribe(Collections.singletonList(ns.getString("topic")));
+        // 6. Consumption Loop
+        ConsumeLoop loop = null;
+        MetricsServer metrics = null;
+        Thread shutdownHook = null;
+        KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(props);
+        try (sink) {
+            loop = new ConsumeLoop(consumer, sink,
+                    ns.getLong("max_messages"), ns.getLong("idle_timeout"), ns.getBoolean("until_end"));
+            if (metricsPort > 0) {
+                // metrics() is a live, thread-safe view, so scrapes never call into the consumer itself.
+                List<MetricsServer.Source> sources = new ArrayList<>();
+                sources.add(MetricsServer.kafkaMetrics("kafka_consumer", consumer.metrics()));
+                sources.add(loop.stats());
+                sources.add(freshness);
+                sources.add(out -> {
+                    out.summary("kafka_avro_consumer_decode_seconds", "Time spent decoding a record value.", decodeNanos);
+                    out.summary("kafka_avro_consumer_format_seconds",
+                            "Time spent formatting a record, including any decoding it triggers.", formatNanos);
+                });
+                if (schemas != null) {
+                    sources.add(schemas);
+                }
+                try {
+                    metrics = new MetricsServer(metricsPort, sources);
+                } catch (IOException e) {
+                    System.err.println("Error starting metrics server: " + e.getMessage());
+                    System.exit(1);
+                }
+            }
+            if (timeRange) {
+                loop.assignTimeRange(topicList != null ? topicList : matchingTopics(consumer, topicPattern),
+                        fromTime, toTime);
+            } else if (topicPattern != null) {
+                consumer.subscribe(topicPattern);
+            } else {
+                consumer.subscribe(topicList);
+            }
 
             // Suppress standard log output for cleaner CLI usage
             System.setProperty(org.slf4j.simple.SimpleLogger.DEFAULT_LOG_LEVEL_KEY, "WARN");
 
-            while (true) {
-                ConsumerRecords<String, Object> records = consumer.poll(Duration.ofMillis(100));
-                for (ConsumerRecord<String, Object> record : records) {
-                    if (isJsonOutput) {
-                        try {
-                            ObjectNode root = mapper.createObjectNode();
-                            root.put("topic", record.topic());
-                            root.put("partition", record.partition());
-                            root.put("offset", record.offset());
-                            root.put("timestamp", record.timestamp());
-
-                            if (record.key() != null) root.put("key", record.key());
-
-                            if (record.value() instanceof GenericRecord) {
-                                JsonNode valueNode = mapper.readTree(record.value().toString());
-                                root.set("value", valueNode);
-                            } else if (record.value() != null) {
-                                root.put("value", record.value().toString());
-                            }
-                            System.out.println(mapper.writeValueAsString(root));
-                        } catch (Exception e) {
-                            System.err.println("Error formatting JSON: " + e.getMessage());
-                        }
-                    } else {
-                        System.out.println(record.value());
-                    }
+            if (commitInterval > 0) {
+                loop.commitEvery(commitInterval);
+            }
+            if (freshness != null) {
+                loop.trackFreshness(freshness);
+            }
+            if (ns.getLong("stats_interval") > 0) {
+                loop.stats().watch(output);
+                loop.reportEvery(ns.getLong("stats_interval"), System.err);
+            }
+            shutdownHook = onShutdown(loop::stop);
+            loop.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (metrics != null) {
+                metrics.close();
+            }
+            if (workerPool != null) {
+                workerPool.shutdownNow();
+            }
+            // Leaves the group right away instead of letting it wait for the session timeout.
+            consumer.close(CLOSE_TIMEOUT);
+        }
+        if (loop != null) {
+            System.err.println(loop.summary());
+        }
+        if (output != null) {
+            System.err.printf("Poll thread blocked on output for %d ms%n",
+                    TimeUnit.NANOSECONDS.toMillis(output.blockedNanos()));
+        }
+        if (sink instanceof AvroFileSink avroSink && avroSink.skipped() > 0) {
+            System.err.println("Skipped " + avroSink.skipped() + " records without a readable Avro value");
+        }
+        if (freshness != null) {
+            System.err.print(freshness.report(true));
+        }
+        boolean exiting = !cancelShutdown(shutdownHook);
+        if (sloMs > 0) {
+            if (freshness.breached()) {
+                System.err.printf("Latency SLO breached: %d of %d records took longer than %d ms, "
+                        + "%s%% were required within it%n", freshness.overSlo(), freshness.total().count(),
+                        sloMs, sloPercentile);
+                // A Ctrl+C or SIGTERM already decided the exit status.
+                if (!exiting) {
+                    System.exit(2);
                 }
             }
+        }
+    }
+
+    private static void exportTopics(Properties props, List<String> topics, Pattern include, String directory, int threads, int maxSplits,
+                                    String outputFormat, RoutingSink.SinkFactory<TopicExport.Range> sinks) {
+        try {
+            Files.createDirectories(Paths.get(directory));
+        } catch (IOException e) {
+            System.err.println("Error creating export directory: " + e.getMessage());
+            System.exit(1);
+        }
+
+        // Suppress standard log output for cleaner CLI usage
+        System.setProperty(org.slf4j.simple.SimpleLogger.DEFAULT_LOG_LEVEL_KEY, "WARN");
+
+        // Ranges are read from explicit offsets. If retention deletes one mid-export, fail rather than
+        // reset to the log end and report the range finished without its records.
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "none");
+
+        TopicExport export = null;
+        try {
+            if (topics == null) {
+                try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(props)) {
+                    topics = matchingTopics(consumer, include);
+                }
+            }
+            export = new TopicExport(() -> new KafkaConsumer<>(props), topics, threads, maxSplits, sinks);
+            onShutdown(export::stop);
+            export.run();
+            if (!"avro".equals(outputFormat)) {
+                joinSplitPartitions(directory, outputFormat, export.ranges());
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
+        if (export != null) {
+            System.err.println(export.summary());
+        }
+    }
+
+    /**
+     * On Ctrl+C or SIGTERM, runs {@code stop} and gives the main thread up to
+     * {@link #SHUTDOWN_TIMEOUT} to drain its output, commit and close before the JVM exits.
+     *
+     * @return the hook, for {@link #cancelShutdown} once the work is done
+     */
+    private static Thread onShutdown(Runnable stop) {
+        Thread main = Thread.currentThread();
+        Thread hook = new Thread(() -> {
+            stop.run();
+            try {
+                main.join(SHUTDOWN_TIMEOUT.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "shutdown");
+        Runtime.getRuntime().addShutdownHook(hook);
+        return hook;
+    }
+
+    /**
+     * Removes a hook added by {@link #onShutdown}, so that System.exit() on the main thread
+     * does not wait for itself.
+     *
+     * @return false if the JVM is already shutting down
+     */
+    private static boolean cancelShutdown(Thread hook) {
+        try {
+            return hook == null || Runtime.getRuntime().removeShutdownHook(hook);
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    /** The existing topics matching {@code include}, leaving out internal ones as {@code subscribe(Pattern)} does. */
+    private static List<String> matchingTopics(Consumer<byte[], byte[]> consumer, Pattern include) {
+        List<String> topics = new ArrayList<>();
+        for (String topic : consumer.listTopics().keySet()) {
+            if (!topic.startsWith("__") && include.matcher(topic).matches()) {
+                topics.add(topic);
+            }
+        }
+        Collections.sort(topics);
+        return topics;
+    }
+
+    /** The output file of an export range; ranges of a split partition get their own part file. */
+    private static Path exportPath(String directory, String name, TopicExport.Range range) {
+        return range.whole()
+                ? Paths.get(directory, name)
+                : Paths.get(directory, String.format("%s.%020d.part", name, range.begin()));
+    }
+
+    /** Concatenates the part files of every split partition, in offset order, into the partition's file. */
+    private static void joinSplitPartitions(String directory, String outputFormat, List<TopicExport.Range> ranges)
+            throws IOException {
+        Map<TopicPartition, List<TopicExport.Range>> split = new LinkedHashMap<>();
+        for (TopicExport.Range range : ranges) {
+            if (!range.whole()) {
+                split.computeIfAbsent(range.partition(), p -> new ArrayList<>()).add(range);
+            }
+        }
+        for (Map.Entry<TopicPartition, List<TopicExport.Range>> entry : split.entrySet()) {
+            String name = entry.getKey().topic() + "-" + entry.getKey().partition() + "." + outputFormat;
+            try (FileChannel target = FileChannel.open(Paths.get(directory, name), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (TopicExport.Range range : entry.getValue()) {
+                    Path part = exportPath(directory, name, range);
+                    if (!Files.exists(part)) {
+                        // Nothing in this range survived compaction.
+                        continue;
+                    }
+                    try (FileChannel source = FileChannel.open(part, StandardOpenOption.READ)) {
+                        long size = source.size();
+                        for (long position = 0; position < size; ) {
+                            position += source.transferTo(position, size - position, target);
+                        }
+                    }
+                    Files.delete(part);
+                }
+            }
+        }
+    }
+
+    private static Long parseTime(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return value.chars().allMatch(Character::isDigit)
+                    ? Long.parseLong(value) : Instant.parse(value).toEpochMilli();
+        } catch (NumberFormatException | DateTimeParseException e) {
+            System.err.println("Error: invalid time '" + value + "', expected an ISO-8601 instant or epoch milliseconds.");
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Opens an output pipeline to {@code path}, or stdout when null. Only a regular file is
+     * fsynced on sync; a pipe or terminal rejects fsync and counts as durable once written.
+     */
+    private static OutputPipeline openPipeline(String path, int bufferSize, int bufferCount,
+                                               long flushBytes, long flushMs) throws IOException {
+        WritableByteChannel channel = openOutput(path);
+        boolean regularFile = Files.isRegularFile(Paths.get(path != null ? path : "/dev/stdout"));
+        return new OutputPipeline(channel, bufferSize, bufferCount, flushBytes, flushMs, regularFile);
+    }
+
+    private static WritableByteChannel openOutput(String path) throws IOException {
+        if (path == null) {
+            return new FileOutputStream(FileDescriptor.out).getChannel();
+        }
+        return FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
     }
 }
\ No newline at end of file
@@ -1,18 +1,19 @@
+import com.example.kafka.CachingSchemaRegistryClient;
+import com.example.kafka.MetricsServer;
+import com.example.kafka.ProduceLoop;
+import com.example.kafka.SchemaCache;
+import io.confluent.kafka.schemaregistry.client.CachedSchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
 import io.confluent.kafka.serializers.KafkaAvroSerializer;
-import io.confluent.kafka.serializers.KafkaAvroSerializerConfig;
 import net.sourceforge.argparse4j.ArgumentParsers;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
 import org.apache.avro.Schema;
-import org.apache.avro.generic.GenericData;
-import org.apache.avro.generic.GenericRecord;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringSerializer;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.JsonNode;
 
 import java.io.BufferedReader;
 import java.io.FileInputStream;
@@ -20,10 +21,19 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class AvroKafkaProducer {
 
+    /** Longest close() waits for outstanding sends after the final flush. */
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
     public static void main(String[] args) {
         ArgumentParser parser = ArgumentParsers.newFor("AvroKafkaProducer").build()
                 .defaultHelp(true)
@@ -42,6 +52,15 @@ public class AvroKafkaProducer {
         parser.addArgument("--value-schema")
                 .help("Path to the Avro schema file for the value. Required if using Avro.");
 
+        parser.addArgument("--schema-cache")
+                .help("Directory to persist schema IDs in, so later runs need no Schema Registry lookups.");
+
+        parser.addArgument("--metrics-port")
+                .type(Integer.class)
+                .setDefault(0)
+                .help("Serve producer and Kafka client metrics in the OpenMetrics format on "
+                        + "http://<host>:<port>/metrics. 0 disables.");
+
         parser.addArgument("--property")
                 .nargs("*")
                 .help("Custom properties. Overrides config file values.");
@@ -100,9 +119,10 @@ public class AvroKafkaProducer {
         }
 
         String schemaRegistryUrl = props.getProperty("schema.registry.url");
-        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
 
         Schema schema = null;
+        SchemaCache schemaCache = null;
+        Serializer<Object> valueSerializer = null;
         if (schemaRegistryUrl != null) {
             if (ns.getString("value_schema") == null) {
                 System.err.println("Error: --value-schema is required when Schema Registry is configured.");
@@ -116,98 +136,72 @@ public class AvroKafkaProducer {
                 System.exit(1);
             }
 
-            props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, KafkaAvroSerializer.class.getName());
-            props.put(KafkaAvroSerializerConfig.SCHEMA_REGISTRY_URL_CONFIG, schemaRegistryUrl);
+            // KafkaAvroSerializer keeps every serializer setting; only its schema ID lookups go through the cache.
+            Map<String, Object> registryConfig = new HashMap<>();
+            props.forEach((k, v) -> registryConfig.put(k.toString(), v));
+            SchemaRegistryClient schemaRegistry = new CachedSchemaRegistryClient(schemaRegistryUrl, 1000, registryConfig);
+            String cacheDir = ns.getString("schema_cache");
+            try {
+                schemaCache = new SchemaCache(schemaRegistry, schemaRegistryUrl,
+                        cacheDir != null ? Paths.get(cacheDir) : null);
+            } catch (IOException e) {
+                System.err.println("Error opening schema cache: " + e.getMessage());
+                System.exit(1);
+            }
+            valueSerializer = new KafkaAvroSerializer(
+                    new CachingSchemaRegistryClient(schemaCache, schemaRegistryUrl, 1000, registryConfig), registryConfig);
         } else {
-            props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+            StringSerializer stringSerializer = new StringSerializer();
+            valueSerializer = (topic, data) -> stringSerializer.serialize(topic, (String) data);
         }
 
         // 5. Production Loop
-        ObjectMapper mapper = new ObjectMapper();
         System.out.println("Enter messages (JSON for Avro, text for String). Press Ctrl+C to exit.");
 
-        try (KafkaProducer<String, Object> producer = new KafkaProducer<>(props);
-             BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-
-                Object value;
-                if (schema != null) {
-                    try {
-                        value = jsonToAvro(mapper.readTree(line), schema);
-                    } catch (Exception e) {
-                        System.err.println("Invalid JSON for Avro schema: " + e.getMessage());
-                        continue;
-                    }
-                } else {
-                    value = line;
-                }
-
-                ProducerRecord<String, Object> record = new ProducerRecord<>(ns.getString("topic"), value);
-                producer.send(record, (metadata, exception) -> {
-                    if (exception != null) {
-                        System.err.println("Error producing message: " + exception.getMessage());
-                    } else {
-                        System.out.println("Produced to " + metadata.topic() + "-" + metadata.partition() + "@" + metadata.offset());
-                    }
-                });
+        KafkaProducer<String, Object> producer = new KafkaProducer<>(props, new StringSerializer(), valueSerializer);
+        ProduceLoop loop = new ProduceLoop(producer, ns.getString("topic"), schema, System.out);
+
+        MetricsServer metrics = null;
+        int metricsPort = ns.getInt("metrics_port");
+        if (metricsPort > 0) {
+            List<MetricsServer.Source> sources = new ArrayList<>();
+            sources.add(MetricsServer.kafkaMetrics("kafka_producer", producer.metrics()));
+            sources.add(loop);
+            if (schemaCache != null) {
+                sources.add(schemaCache);
+            }
+            try {
+                metrics = new MetricsServer(metricsPort, sources);
+            } catch (IOException e) {
+                System.err.println("Error starting metrics server: " + e.getMessage());
+                System.exit(1);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-    }
-
-    private static Object jsonToAvro(JsonNode json, Schema schema) {
-        if (json.isNull()) return null;
-
-        switch (schema.getType()) {
-            case RECORD:
-                GenericRecord record = new GenericData.Record(schema);
-                for (Schema.Field field : schema.getFields()) {
-                    JsonNode fieldJson = json.get(field.name());
-                    if (fieldJson == null) {
-                        if (field.defaultVal() != null) {
-                            // This is a simplification. Avro defaults are complex to handle manually.
-                            // Ideally, use a library like avro-json-decoder if available, but for now we skip or error.
-                            // For this simple CLI, we'll assume the JSON must match.
-                            continue; 
-                        }
-                        continue;
-                    }
-                    record.put(field.name(), jsonToAvro(fieldJson, field.schema()));
+        MetricsServer metricsServer = metrics;
+
+        AtomicBoolean closed = new AtomicBoolean();
+        // Runs at end of input or on Ctrl+C / SIGTERM, so in-flight callbacks still complete and print.
+        Runnable shutdown = () -> {
+            if (closed.compareAndSet(false, true)) {
+                // The main thread may still be reading input; it must not send into a closed producer.
+                loop.stop();
+                producer.flush();
+                producer.close(CLOSE_TIMEOUT);
+                if (metricsServer != null) {
+                    metricsServer.close();
                 }
-                return record;
-            case ARRAY:
-                GenericData.Array<Object> array = new GenericData.Array<>(json.size(), schema);
-                for (JsonNode element : json) {
-                    array.add(jsonToAvro(element, schema.getElementType()));
+                if (loop.unacked() > 0) {
+                    System.err.println(loop.unacked() + " records were not acknowledged");
                 }
-                return array;
-            case STRING:
-                return json.asText();
-            case INT:
-                return json.asInt();
-            case LONG:
-                return json.asLong();
-            case FLOAT:
-                return (float) json.asDouble();
-            case DOUBLE:
-                return json.asDouble();
-            case BOOLEAN:
-                return json.asBoolean();
-            case UNION:
-                // Simple union handling: try the first non-null type that matches
-                for (Schema subSchema : schema.getTypes()) {
-                    if (subSchema.getType() == Schema.Type.NULL) continue;
-                    try {
-                        return jsonToAvro(json, subSchema);
-                    } catch (Exception ignored) {}
-                }
-                return null;
-            default:
-                return json.asText();
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(new Thread(shutdown, "shutdown"));
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
+            loop.run(reader);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
+        shutdown.run();
     }
-}
\ No newline at end of file
+}
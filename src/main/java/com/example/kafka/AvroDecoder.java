@@ -0,0 +1,186 @@
+package com.example.kafka;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.ResolvingDecoder;
+import org.apache.avro.util.Utf8;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Decodes Confluent wire-format Avro values into a reader schema derived from each
+ * writer schema.
+ *
+ * A datum reader and its {@link ResolvingDecoder} are built once per writer schema ID,
+ * so fields the reader schema leaves out are skipped in the binary stream and never
+ * turned into Java objects. The binary decoder is reused across records and, when record
+ * reuse is enabled, so is the last decoded record of each schema, leaving the leaf values
+ * as the only steady-state allocation. String fields with few distinct values are
+ * resolved to cached String instances instead of fresh Utf8 objects.
+ *
+ * Instances hold per-thread decoding state and must not be shared between threads;
+ * writer schemas come from a shared {@link SchemaCache}. With record reuse the
+ * returned value is only valid until the next call.
+ */
+public class AvroDecoder implements Deserializer<Object> {
+
+    private static final byte MAGIC_BYTE = 0x0;
+    private static final int HEADER_SIZE = 5;
+
+    /** Distinct values a string field may have before it is no longer cached. */
+    private static final int STRING_CACHE_LIMIT = 1024;
+
+    /** Writer schema IDs whose missing projected fields were already reported, across all decoders. */
+    private static final Set<Integer> REPORTED_MISSING = ConcurrentHashMap.newKeySet();
+
+    private final SchemaCache schemas;
+    private final BiFunction<Integer, Schema, Schema> readerSchemaFor;
+    private final boolean reuseRecords;
+    private final Map<Integer, ResolvedReader> readers = new HashMap<>();
+    private BinaryDecoder binaryDecoder;
+
+    /**
+     * @param readerSchemaFor maps a writer schema to the schema to decode into
+     * @param reuseRecords    decode into the record returned by the previous call for the same schema
+     */
+    public AvroDecoder(SchemaCache schemas, Function<Schema, Schema> readerSchemaFor,
+                       boolean reuseRecords) {
+        this(schemas, (schemaId, writer) -> readerSchemaFor.apply(writer), reuseRecords);
+    }
+
+    private AvroDecoder(SchemaCache schemas, BiFunction<Integer, Schema, Schema> readerSchemaFor,
+                        boolean reuseRecords) {
+        this.schemas = schemas;
+        this.readerSchemaFor = readerSchemaFor;
+        this.reuseRecords = reuseRecords;
+    }
+
+    /** Decodes into each value's writer schema. */
+    public static AvroDecoder plain(SchemaCache schemas, boolean reuseRecords) {
+        return new AvroDecoder(schemas, Function.identity(), reuseRecords);
+    }
+
+    /**
+     * Decodes into the writer schema projected onto the given fields. Fields a writer schema
+     * lacks are reported on stderr once per schema ID, however many decoders project it.
+     */
+    public static AvroDecoder projecting(SchemaCache schemas, FieldProjection projection,
+                                         boolean reuseRecords) {
+        return new AvroDecoder(schemas, (schemaId, writer) -> {
+            List<String> missing = new ArrayList<>();
+            Schema reader = projection.apply(writer, missing);
+            if (!missing.isEmpty() && REPORTED_MISSING.add(schemaId)) {
+                System.err.println("Fields not in schema " + writer.getFullName() + ": " + String.join(", ", missing));
+            }
+            return reader;
+        }, reuseRecords);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length < HEADER_SIZE || data[0] != MAGIC_BYTE) {
+            throw new SerializationException("Unknown magic byte");
+        }
+        int schemaId = schemaId(data);
+        try {
+            ResolvedReader reader = readerFor(schemaId);
+            binaryDecoder = DecoderFactory.get().binaryDecoder(data, HEADER_SIZE, data.length - HEADER_SIZE, binaryDecoder);
+            return reader.read(binaryDecoder);
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Error deserializing Avro value for schema " + schemaId, e);
+        }
+    }
+
+    /** The schema values written with {@code schemaId} are decoded into. */
+    public Schema readerSchema(int schemaId) throws IOException {
+        return readerFor(schemaId).getExpected();
+    }
+
+    static int schemaId(byte[] data) {
+        return ((data[1] & 0xff) << 24) | ((data[2] & 0xff) << 16) | ((data[3] & 0xff) << 8) | (data[4] & 0xff);
+    }
+
+    private ResolvedReader readerFor(int schemaId) throws IOException {
+        ResolvedReader reader = readers.get(schemaId);
+        if (reader == null) {
+            Schema writer = schemas.byId(schemaId);
+            reader = new ResolvedReader(writer, readerSchemaFor.apply(schemaId, writer), reuseRecords);
+            readers.put(schemaId, reader);
+        }
+        return reader;
+    }
+
+    /** A datum reader bound to one resolving decoder for a fixed writer/reader pair. */
+    private static final class ResolvedReader extends GenericDatumReader<Object> {
+
+        private final ResolvingDecoder resolver;
+        private final boolean reuseRecords;
+        private final Map<Schema, StringCache> stringCaches = new IdentityHashMap<>();
+        private Utf8 scratch = new Utf8();
+        private Object reuse;
+
+        ResolvedReader(Schema writer, Schema reader, boolean reuseRecords) throws IOException {
+            super(writer, reader);
+            this.resolver = DecoderFactory.get().resolvingDecoder(Schema.applyAliases(writer, reader), reader, null);
+            this.reuseRecords = reuseRecords;
+        }
+
+        Object read(Decoder in) throws IOException {
+            resolver.configure(in);
+            Object result = read(reuse, getExpected(), resolver);
+            resolver.drain();
+            if (reuseRecords && result instanceof IndexedRecord) {
+                reuse = result;
+            }
+            return result;
+        }
+
+        @Override
+        protected Object readString(Object old, Schema expected, Decoder in) throws IOException {
+            StringCache cache = stringCaches.computeIfAbsent(expected, s -> new StringCache());
+            if (cache.saturated) {
+                return super.readString(old, expected, in);
+            }
+            scratch = in.readString(scratch);
+            return cache.intern(scratch);
+        }
+    }
+
+    /** Maps the UTF-8 bytes of a field's values to shared Strings until the field proves high-cardinality. */
+    private static final class StringCache {
+        private final Map<Utf8, String> values = new HashMap<>();
+        boolean saturated;
+
+        String intern(Utf8 utf8) {
+            String value = values.get(utf8);
+            if (value == null) {
+                value = utf8.toString();
+                if (values.size() < STRING_CACHE_LIMIT) {
+                    values.put(new Utf8(utf8), value);
+                } else {
+                    saturated = true;
+                    values.clear();
+                }
+            }
+            return value;
+        }
+    }
+}
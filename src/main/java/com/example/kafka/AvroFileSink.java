@@ -0,0 +1,173 @@
+package com.example.kafka;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes record values into Avro Object Container Files.
+ *
+ * Values arrive in Confluent wire format, whose payload is already the binary encoding of
+ * the writer schema, so it is appended to the current block as-is without being decoded.
+ * When a projecting decoder is given, values are decoded into its reader schema instead
+ * and the files use that schema. An optional filter drops records before they are written;
+ * it sees values decoded through that same decoder, so a value it reads is decoded once
+ * for both, or through a plain decoder of the sink's own when values are copied through.
+ * Each writer schema ID gets its own file, opened when the ID is first seen and kept open
+ * until the sink closes, so interleaved schemas do not fragment the output; files are
+ * named {@code <stem>-<sequence>.avro} after the configured path. Records without an Avro
+ * value (tombstones, foreign payloads) are skipped and counted, as are records whose value
+ * or schema cannot be read, which are also reported on stderr. Files are written on the
+ * poll thread, so offsets become durable when the open files are flushed and fsynced.
+ */
+public class AvroFileSink implements RecordSink {
+
+    private static final byte MAGIC_BYTE = 0x0;
+    private static final int HEADER_SIZE = 5;
+
+    private final File directory;
+    private final String stem;
+    private final CodecFactory codec;
+    private final int syncInterval;
+    private final SchemaCache schemas;
+    private final AvroDecoder decoder;
+    private final RecordFilter filter;
+    private final RecordView view;
+
+    private final Map<Integer, DataFileWriter<Object>> writers = new LinkedHashMap<>();
+    private int fileSequence;
+    private long skipped;
+    private final Map<TopicPartition, Long> written = new HashMap<>();
+    private final Map<TopicPartition, Long> durable = new HashMap<>();
+
+    /**
+     * @param decoder decodes values into the schema to write, or null to copy the writer encoding through
+     * @param filter  records to keep, or null to keep everything
+     */
+    public AvroFileSink(File path, CodecFactory codec, int syncInterval, SchemaCache schemas,
+                        AvroDecoder decoder, RecordFilter filter, Deserializer<String> keyDeserializer) {
+        File absolute = path.getAbsoluteFile();
+        String name = absolute.getName();
+        this.directory = absolute.getParentFile();
+        this.stem = name.endsWith(".avro") ? name.substring(0, name.length() - ".avro".length()) : name;
+        this.codec = codec;
+        this.syncInterval = syncInterval;
+        this.schemas = schemas;
+        this.decoder = decoder;
+        this.filter = filter;
+        this.view = filter == null ? null
+                : new RecordView(keyDeserializer, decoder != null ? decoder : AvroDecoder.plain(schemas, true));
+    }
+
+    /** Maps a codec name as accepted on the command line to an Avro codec. */
+    public static CodecFactory codec(String name) {
+        switch (name) {
+            case "null":
+                return CodecFactory.nullCodec();
+            case "deflate":
+                return CodecFactory.deflateCodec(CodecFactory.DEFAULT_DEFLATE_LEVEL);
+            case "snappy":
+                return CodecFactory.snappyCodec();
+            case "zstd":
+                return CodecFactory.zstandardCodec(CodecFactory.DEFAULT_ZSTANDARD_LEVEL);
+            default:
+                throw new IllegalArgumentException("Unknown Avro codec: " + name);
+        }
+    }
+
+    @Override
+    public void write(TopicPartition partition, List<ConsumerRecord<byte[], byte[]>> records) throws IOException {
+        for (ConsumerRecord<byte[], byte[]> record : records) {
+            byte[] value = record.value();
+            if (value == null || value.length < HEADER_SIZE || value[0] != MAGIC_BYTE) {
+                skipped++;
+                continue;
+            }
+            int schemaId = AvroDecoder.schemaId(value);
+            DataFileWriter<Object> writer = writers.get(schemaId);
+            Schema schema = null;
+            Object datum = null;
+            try {
+                if (filter != null && !filter.test(view.reset(record))) {
+                    continue;
+                }
+                if (decoder != null) {
+                    datum = view != null ? view.value() : decoder.deserialize(record.topic(), value);
+                }
+                if (writer == null) {
+                    schema = decoder != null ? decoder.readerSchema(schemaId) : schemas.byId(schemaId);
+                }
+            } catch (SerializationException | IOException e) {
+                System.err.println("Error reading record " + record.topic() + "-" + record.partition()
+                        + "@" + record.offset() + ": " + e.getMessage());
+                skipped++;
+                continue;
+            }
+            if (writer == null) {
+                writer = open(schemaId, schema, record.topic());
+            }
+            if (decoder != null) {
+                writer.append(datum);
+            } else {
+                writer.appendEncoded(ByteBuffer.wrap(value, HEADER_SIZE, value.length - HEADER_SIZE));
+            }
+        }
+        if (!records.isEmpty()) {
+            written.put(partition, records.get(records.size() - 1).offset() + 1);
+        }
+    }
+
+    @Override
+    public void endBatch() {
+        // DataFileWriter emits a block whenever the sync interval fills up.
+    }
+
+    @Override
+    public Map<TopicPartition, Long> durableOffsets(boolean wait) throws IOException {
+        for (DataFileWriter<Object> writer : writers.values()) {
+            writer.fSync();
+        }
+        durable.putAll(written);
+        return durable;
+    }
+
+    /** Number of records that had no readable Avro value and were not written. */
+    public long skipped() {
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataFileWriter<Object> writer : writers.values()) {
+            writer.fSync();
+            writer.close();
+        }
+        writers.clear();
+    }
+
+    private DataFileWriter<Object> open(int schemaId, Schema schema, String topic) throws IOException {
+        File file = new File(directory, String.format("%s-%04d.avro", stem, fileSequence++));
+        DataFileWriter<Object> writer = new DataFileWriter<>(new GenericDatumWriter<>(schema));
+        writer.setCodec(codec);
+        writer.setSyncInterval(syncInterval);
+        writer.setMeta("kafka.topic", topic);
+        writer.setMeta("confluent.schema.id", schemaId);
+        writer.create(schema, file);
+        writers.put(schemaId, writer);
+        System.err.println("Writing schema " + schemaId + " records to " + file);
+        return writer;
+    }
+}
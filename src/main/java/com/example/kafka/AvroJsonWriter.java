@@ -0,0 +1,179 @@
+package com.example.kafka;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.util.Utf8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes Avro generic data straight to a Jackson {@link JsonGenerator}.
+ *
+ * Each schema is compiled once into a tree of writers with pre-encoded field names,
+ * so formatting a record is a single walk over its fields with no intermediate
+ * String or JsonNode. The output matches what {@code GenericData.toString()} produces
+ * (unions unwrapped, bytes and fixed as ISO-8859-1 strings).
+ *
+ * Instances are not thread-safe; use one per formatting thread.
+ */
+public class AvroJsonWriter {
+
+    private final Map<Schema, ValueWriter> plans = new IdentityHashMap<>();
+
+    public void write(Object datum, JsonGenerator gen) throws IOException {
+        if (datum instanceof IndexedRecord record) {
+            writerFor(record.getSchema()).write(datum, gen);
+        } else if (datum == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(datum.toString());
+        }
+    }
+
+    private ValueWriter writerFor(Schema schema) {
+        ValueWriter writer = plans.get(schema);
+        if (writer == null) {
+            writer = compile(schema);
+        }
+        return writer;
+    }
+
+    private ValueWriter compile(Schema schema) {
+        switch (schema.getType()) {
+            case RECORD: {
+                // Register before compiling the fields so recursive schemas resolve to this writer.
+                RecordWriter writer = new RecordWriter();
+                plans.put(schema, writer);
+                List<Schema.Field> fields = schema.getFields();
+                writer.names = new SerializedString[fields.size()];
+                writer.values = new ValueWriter[fields.size()];
+                for (Schema.Field field : fields) {
+                    writer.names[field.pos()] = new SerializedString(field.name());
+                    writer.values[field.pos()] = writerFor(field.schema());
+                }
+                return writer;
+            }
+            case ARRAY: {
+                ValueWriter element = writerFor(schema.getElementType());
+                return remember(schema, (datum, gen) -> {
+                    Collection<?> items = (Collection<?>) datum;
+                    gen.writeStartArray(items, items.size());
+                    for (Object item : items) {
+                        element.write(item, gen);
+                    }
+                    gen.writeEndArray();
+                });
+            }
+            case MAP: {
+                ValueWriter value = writerFor(schema.getValueType());
+                return remember(schema, (datum, gen) -> {
+                    gen.writeStartObject();
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) datum).entrySet()) {
+                        gen.writeFieldName(entry.getKey().toString());
+                        value.write(entry.getValue(), gen);
+                    }
+                    gen.writeEndObject();
+                });
+            }
+            case UNION:
+                return remember(schema, compileUnion(schema));
+            case STRING:
+                return remember(schema, (datum, gen) -> {
+                    if (datum instanceof Utf8 utf8) {
+                        // Escapes straight from the UTF-8 bytes without materializing a String.
+                        gen.writeUTF8String(utf8.getBytes(), 0, utf8.getByteLength());
+                    } else {
+                        gen.writeString(datum.toString());
+                    }
+                });
+            case ENUM:
+                return remember(schema, (datum, gen) -> gen.writeString(datum.toString()));
+            case BYTES:
+                return remember(schema, (datum, gen) -> {
+                    ByteBuffer bytes = ((ByteBuffer) datum).duplicate();
+                    gen.writeString(StandardCharsets.ISO_8859_1.decode(bytes).toString());
+                });
+            case FIXED:
+                return remember(schema, (datum, gen) ->
+                        gen.writeString(new String(((GenericFixed) datum).bytes(), StandardCharsets.ISO_8859_1)));
+            case INT:
+                return remember(schema, (datum, gen) -> gen.writeNumber((Integer) datum));
+            case LONG:
+                return remember(schema, (datum, gen) -> gen.writeNumber((Long) datum));
+            case FLOAT:
+                return remember(schema, (datum, gen) -> gen.writeNumber((Float) datum));
+            case DOUBLE:
+                return remember(schema, (datum, gen) -> gen.writeNumber((Double) datum));
+            case BOOLEAN:
+                return remember(schema, (datum, gen) -> gen.writeBoolean((Boolean) datum));
+            case NULL:
+                return remember(schema, (datum, gen) -> gen.writeNull());
+            default:
+                throw new IllegalArgumentException("Unsupported Avro type: " + schema.getType());
+        }
+    }
+
+    private ValueWriter compileUnion(Schema schema) {
+        List<Schema> types = schema.getTypes();
+        // The common ["null", T] shape needs no branch resolution beyond a null check.
+        if (types.size() == 2 && types.get(0).getType() == Schema.Type.NULL) {
+            ValueWriter branch = writerFor(types.get(1));
+            return nullable(branch);
+        }
+        if (types.size() == 2 && types.get(1).getType() == Schema.Type.NULL) {
+            ValueWriter branch = writerFor(types.get(0));
+            return nullable(branch);
+        }
+        ValueWriter[] branches = new ValueWriter[types.size()];
+        for (int i = 0; i < branches.length; i++) {
+            branches[i] = writerFor(types.get(i));
+        }
+        return (datum, gen) -> branches[GenericData.get().resolveUnion(schema, datum)].write(datum, gen);
+    }
+
+    private static ValueWriter nullable(ValueWriter branch) {
+        return (datum, gen) -> {
+            if (datum == null) {
+                gen.writeNull();
+            } else {
+                branch.write(datum, gen);
+            }
+        };
+    }
+
+    private ValueWriter remember(Schema schema, ValueWriter writer) {
+        plans.put(schema, writer);
+        return writer;
+    }
+
+    @FunctionalInterface
+    private interface ValueWriter {
+        void write(Object datum, JsonGenerator gen) throws IOException;
+    }
+
+    private static final class RecordWriter implements ValueWriter {
+        SerializedString[] names;
+        ValueWriter[] values;
+
+        @Override
+        public void write(Object datum, JsonGenerator gen) throws IOException {
+            IndexedRecord record = (IndexedRecord) datum;
+            gen.writeStartObject();
+            for (int i = 0; i < names.length; i++) {
+                gen.writeFieldName(names[i]);
+                values[i].write(record.get(i), gen);
+            }
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes records as length-prefixed binary frames without decoding them.
+ *
+ * Key and value bytes are copied through untouched, so Avro values keep their Confluent
+ * wire format (magic byte, schema ID, payload). All integers are big-endian and a length
+ * of -1 marks a null key, value or header value:
+ *
+ * <pre>
+ * int32  frame length (bytes after this field)
+ * int32  partition
+ * int64  offset
+ * int64  timestamp
+ * int32  header count, then per header: int32 key length, UTF-8 key, int32 value length, value
+ * int32  key length, key
+ * int32  value length, value
+ * </pre>
+ */
+public class BinaryFrameFormatter implements RecordFormatter {
+
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+
+    @Override
+    public void format(RecordView record, OutputStream out) throws IOException {
+        ConsumerRecord<byte[], byte[]> raw = record.raw();
+        byte[] key = raw.key();
+        byte[] value = raw.value();
+
+        scratch.clear();
+        scratch.position(4);
+        scratch.putInt(raw.partition());
+        scratch.putLong(raw.offset());
+        scratch.putLong(raw.timestamp());
+
+        int countPosition = scratch.position();
+        int count = 0;
+        scratch.putInt(0);
+        for (Header header : raw.headers()) {
+            putBytes(header.key().getBytes(StandardCharsets.UTF_8));
+            putBytes(header.value());
+            count++;
+        }
+        scratch.putInt(countPosition, count);
+
+        ensureRemaining(4);
+        scratch.putInt(key == null ? -1 : key.length);
+        int frameLength = scratch.position() - 4 + length(key) + 4 + length(value);
+        scratch.putInt(0, frameLength);
+
+        out.write(scratch.array(), 0, scratch.position());
+        if (key != null) {
+            out.write(key);
+        }
+        scratch.clear();
+        scratch.putInt(value == null ? -1 : value.length);
+        out.write(scratch.array(), 0, 4);
+        if (value != null) {
+            out.write(value);
+        }
+    }
+
+    private void putBytes(byte[] bytes) {
+        ensureRemaining(4 + length(bytes));
+        scratch.putInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) {
+            scratch.put(bytes);
+        }
+    }
+
+    private void ensureRemaining(int needed) {
+        if (scratch.remaining() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + needed));
+            scratch.flip();
+            larger.put(scratch);
+            scratch = larger;
+        }
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.kafka;
+
+import io.confluent.kafka.schemaregistry.ParsedSchema;
+import io.confluent.kafka.schemaregistry.avro.AvroSchema;
+import io.confluent.kafka.schemaregistry.client.CachedSchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.rest.entities.requests.RegisterSchemaResponse;
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A Schema Registry client that resolves the IDs of Avro schemas under a subject through a
+ * {@link SchemaCache}, so a producer with a persisted cache starts without contacting
+ * Schema Registry.
+ *
+ * Handed to {@code KafkaAvroSerializer}, it leaves every serializer setting working:
+ * subject name strategies decide the subject as usual, and lookups the cache does not
+ * cover, such as the latest version behind {@code use.latest.version}, go to the registry
+ * as with a plain {@link CachedSchemaRegistryClient}. Instances are thread-safe.
+ */
+public class CachingSchemaRegistryClient extends CachedSchemaRegistryClient {
+
+    private final SchemaCache cache;
+
+    /**
+     * @param cache answers ID lookups first; it resolves its misses through a client of its own
+     */
+    public CachingSchemaRegistryClient(SchemaCache cache, String baseUrl, int cacheCapacity, Map<String, ?> configs) {
+        super(baseUrl, cacheCapacity, configs);
+        this.cache = cache;
+    }
+
+    @Override
+    public int register(String subject, ParsedSchema schema, boolean normalize)
+            throws IOException, RestClientException {
+        if (schema instanceof AvroSchema avro) {
+            return cache.idFor(subject, avro.rawSchema(), true, normalize);
+        }
+        return super.register(subject, schema, normalize);
+    }
+
+    @Override
+    public RegisterSchemaResponse registerWithResponse(String subject, ParsedSchema schema, boolean normalize)
+            throws IOException, RestClientException {
+        if (!(schema instanceof AvroSchema)) {
+            return super.registerWithResponse(subject, schema, normalize);
+        }
+        RegisterSchemaResponse response = new RegisterSchemaResponse();
+        response.setId(register(subject, schema, normalize));
+        return response;
+    }
+
+    @Override
+    public int getId(String subject, ParsedSchema schema, boolean normalize)
+            throws IOException, RestClientException {
+        if (schema instanceof AvroSchema avro) {
+            return cache.idFor(subject, avro.rawSchema(), false, normalize);
+        }
+        return super.getId(subject, schema, normalize);
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.kafka;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls a consumer into a sink until one of the configured bounds is reached.
+ *
+ * Without bounds the loop runs until the consumer fails. Partitions can be bounded
+ * individually by a stop offset or a stop timestamp; a partition that reaches its bound is
+ * paused so fetches go to the others, and the loop ends once every assigned partition has
+ * finished. With {@code untilEnd}, the end offset of each partition is captured when it is
+ * first assigned and used as its stop offset. Records polled past a bound or the message
+ * limit are not written, and their partition is rewound to the first of them, so the
+ * position a group commits on close never skips records that were not written.
+ *
+ * With a commit interval, offsets are committed only once the sink reports their output
+ * durable: asynchronously at most once per interval while running, and synchronously, after
+ * waiting for all output, when the loop ends.
+ *
+ * With a report interval, a {@link ConsumerStats} report is printed at most once per
+ * interval; it is built on the poll thread because the consumer is not thread-safe. When
+ * record latency is tracked, each report is followed by the {@link FreshnessStats} of the
+ * interval, measured when a poll's output has been handed on, and the loop ends as soon as
+ * the latency SLO is breached.
+ *
+ * {@link #stop()} may be called from any thread, typically a shutdown hook; it wakes the
+ * consumer and the loop ends as if a bound had been reached.
+ */
+public class ConsumeLoop {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+
+    private final Consumer<byte[], byte[]> consumer;
+    private final RecordSink sink;
+    private final long maxMessages;
+    private final long idleTimeoutNanos;
+    private final boolean untilEnd;
+    private final Map<TopicPartition, Long> stopOffsets = new HashMap<>();
+    private final Set<TopicPartition> finished = new HashSet<>();
+    private long stopTimestamp = Long.MAX_VALUE;
+    private long commitIntervalNanos;
+    private final Map<TopicPartition, Long> committed = new HashMap<>();
+
+    private volatile boolean running;
+    private volatile boolean stopping;
+
+    private final ConsumerStats stats = new ConsumerStats();
+    private long reportIntervalNanos;
+    private PrintStream reportOut;
+    private FreshnessStats freshness;
+    private final List<TopicPartition> writtenPartitions = new ArrayList<>();
+    private final List<List<ConsumerRecord<byte[], byte[]>>> writtenSlices = new ArrayList<>();
+
+    private long records;
+    private long bytes;
+    private long elapsedNanos;
+
+    /**
+     * @param maxMessages   stop after writing this many records, or 0 for no limit
+     * @param idleTimeoutMs stop after this long without records, or 0 to wait forever
+     * @param untilEnd      stop once every assigned partition reaches its end offset at assignment
+     */
+    public ConsumeLoop(Consumer<byte[], byte[]> consumer, RecordSink sink,
+                       long maxMessages, long idleTimeoutMs, boolean untilEnd) {
+        this.consumer = consumer;
+        this.sink = sink;
+        this.maxMessages = maxMessages;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        this.untilEnd = untilEnd;
+    }
+
+    /** Finishes each given partition before the record at its offset. */
+    public void stopAt(Map<TopicPartition, Long> offsets) {
+        stopOffsets.putAll(offsets);
+    }
+
+    /** Finishes each partition without a stop offset at its first record newer than {@code timestamp}. */
+    public void stopAfter(long timestamp) {
+        stopTimestamp = timestamp;
+    }
+
+    /**
+     * Assigns every partition of {@code topics}, seeks each to its first record at or after
+     * {@code fromTime}, and bounds each before its first record after {@code toTime}. All
+     * partitions are fetched together; each one stops on its own.
+     *
+     * @param fromTime start time in epoch milliseconds, or null to start at the committed or reset position
+     * @param toTime   end time in epoch milliseconds, or null for no end
+     */
+    public void assignTimeRange(List<String> topics, Long fromTime, Long toTime) {
+        List<TopicPartition> partitions = new ArrayList<>();
+        for (String topic : topics) {
+            for (PartitionInfo info : consumer.partitionsFor(topic)) {
+                partitions.add(new TopicPartition(topic, info.partition()));
+            }
+        }
+        consumer.assign(partitions);
+
+        if (fromTime != null) {
+            List<TopicPartition> past = new ArrayList<>();
+            offsetsForTime(partitions, fromTime).forEach((partition, offset) -> {
+                if (offset != null) {
+                    consumer.seek(partition, offset.offset());
+                } else {
+                    past.add(partition);
+                }
+            });
+            // No record at or after fromTime yet; only records written from now on qualify.
+            // An empty collection would move every assigned partition to its end.
+            if (!past.isEmpty()) {
+                consumer.seekToEnd(past);
+            }
+        }
+        if (toTime != null) {
+            // The time index gives the first offset past toTime where one exists. Partitions
+            // without one stop at their current end if toTime has passed, and otherwise at
+            // the first newer record they receive.
+            Map<TopicPartition, Long> stops = new HashMap<>();
+            List<TopicPartition> open = new ArrayList<>();
+            offsetsForTime(partitions, toTime + 1).forEach((partition, offset) -> {
+                if (offset != null) {
+                    stops.put(partition, offset.offset());
+                } else {
+                    open.add(partition);
+                }
+            });
+            if (!open.isEmpty() && toTime < System.currentTimeMillis()) {
+                stops.putAll(consumer.endOffsets(open));
+            }
+            stopAt(stops);
+            stopAfter(toTime);
+        }
+    }
+
+    private Map<TopicPartition, OffsetAndTimestamp> offsetsForTime(List<TopicPartition> partitions, long timestamp) {
+        Map<TopicPartition, Long> query = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            query.put(partition, timestamp);
+        }
+        return consumer.offsetsForTimes(query);
+    }
+
+    /** Commits durable offsets at most every {@code intervalMs}; auto-commit must be disabled. */
+    public void commitEvery(long intervalMs) {
+        commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+    }
+
+    /** Prints a stats report to {@code out} at most every {@code intervalMs}. */
+    public void reportEvery(long intervalMs, PrintStream out) {
+        reportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        reportOut = out;
+    }
+
+    /** Adds the latency from each record's timestamp until its output was handed on to {@code freshness}. */
+    public void trackFreshness(FreshnessStats freshness) {
+        this.freshness = freshness;
+    }
+
+    /** Counters of this loop, for reporting. */
+    public ConsumerStats stats() {
+        return stats;
+    }
+
+    public void run() throws IOException {
+        long start = System.nanoTime();
+        long lastRecord = start;
+        long lastCommit = start;
+        long lastReport = start;
+        running = true;
+        try {
+            while (!limitReached() && !stopping) {
+                ConsumerRecords<byte[], byte[]> batch = consumer.poll(POLL_TIMEOUT);
+                long polled = System.nanoTime();
+                if (batch.isEmpty()) {
+                    if (idleTimeoutNanos > 0 && System.nanoTime() - lastRecord >= idleTimeoutNanos) {
+                        break;
+                    }
+                } else {
+                    lastRecord = System.nanoTime();
+                    write(batch);
+                }
+                sink.endBatch();
+                if (!batch.isEmpty()) {
+                    stats.batch(System.nanoTime() - polled);
+                }
+                if (freshness != null && !writtenSlices.isEmpty()) {
+                    long now = System.currentTimeMillis();
+                    for (int i = 0; i < writtenSlices.size(); i++) {
+                        freshness.add(writtenPartitions.get(i), writtenSlices.get(i), now);
+                    }
+                    writtenPartitions.clear();
+                    writtenSlices.clear();
+                    if (freshness.breached()) {
+                        break;
+                    }
+                }
+                if (reportIntervalNanos > 0 && System.nanoTime() - lastReport >= reportIntervalNanos) {
+                    reportOut.println(stats.report(consumer));
+                    if (freshness != null) {
+                        reportOut.print(freshness.report(false));
+                    }
+                    lastReport = System.nanoTime();
+                }
+                if (commitIntervalNanos > 0 && System.nanoTime() - lastCommit >= commitIntervalNanos) {
+                    commit(false);
+                    lastCommit = System.nanoTime();
+                }
+                if (bounded() && allFinished()) {
+                    break;
+                }
+            }
+        } catch (WakeupException e) {
+            if (!stopping) {
+                throw e;
+            }
+        } finally {
+            running = false;
+            elapsedNanos = System.nanoTime() - start;
+        }
+        if (commitIntervalNanos > 0) {
+            commit(true);
+        }
+    }
+
+    /** Makes a running loop return after its current batch. */
+    public void stop() {
+        stopping = true;
+        if (running) {
+            consumer.wakeup();
+        }
+    }
+
+    /** Records written to the sink. */
+    public long records() {
+        return records;
+    }
+
+    /** Serialized key and value bytes of the records written. */
+    public long bytes() {
+        return bytes;
+    }
+
+    /** One-line throughput summary of the finished run. */
+    public String summary() {
+        return summary(records, bytes, elapsedNanos);
+    }
+
+    static String summary(long records, long bytes, long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        return String.format("Processed %d records (%d bytes) in %.3f s: %.0f records/s, %.2f MB/s",
+                records, bytes, seconds, records / seconds, bytes / seconds / (1024 * 1024));
+    }
+
+    private void commit(boolean wait) throws IOException {
+        Set<TopicPartition> assigned = consumer.assignment();
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        sink.durableOffsets(wait).forEach((partition, offset) -> {
+            if (assigned.contains(partition) && !offset.equals(committed.get(partition))) {
+                offsets.put(partition, new OffsetAndMetadata(offset));
+            }
+        });
+        if (offsets.isEmpty()) {
+            return;
+        }
+        offsets.forEach((partition, offset) -> committed.put(partition, offset.offset()));
+        if (wait) {
+            try {
+                consumer.commitSync(offsets);
+            } catch (WakeupException e) {
+                // A stop() that raced with the end of the loop; the commit itself still has to happen.
+                consumer.commitSync(offsets);
+            }
+        } else {
+            consumer.commitAsync(offsets, (result, exception) -> {
+                if (exception != null) {
+                    System.err.println("Offset commit failed: " + exception.getMessage());
+                    // Commit these partitions again next time.
+                    offsets.keySet().forEach(committed::remove);
+                }
+            });
+        }
+    }
+
+    private boolean limitReached() {
+        return maxMessages > 0 && records >= maxMessages;
+    }
+
+    private void write(ConsumerRecords<byte[], byte[]> batch) throws IOException {
+        for (TopicPartition partition : batch.partitions()) {
+            List<ConsumerRecord<byte[], byte[]>> polled = batch.records(partition);
+            int length = 0;
+            if (!limitReached()) {
+                length = boundedLength(partition, polled);
+                if (length < polled.size()) {
+                    finish(partition);
+                }
+                if (maxMessages > 0) {
+                    length = (int) Math.min(length, maxMessages - records);
+                }
+            }
+            if (length < polled.size()) {
+                // The position is already past every polled record.
+                consumer.seek(partition, polled.get(length).offset());
+            }
+            if (length == 0) {
+                continue;
+            }
+            List<ConsumerRecord<byte[], byte[]>> slice = length < polled.size() ? polled.subList(0, length) : polled;
+            sink.write(partition, slice);
+            if (freshness != null) {
+                writtenPartitions.add(partition);
+                writtenSlices.add(slice);
+            }
+            long size = 0;
+            for (ConsumerRecord<byte[], byte[]> record : slice) {
+                size += Math.max(record.serializedKeySize(), 0) + Math.max(record.serializedValueSize(), 0);
+            }
+            records += slice.size();
+            bytes += size;
+            stats.written(slice.size(), size);
+        }
+    }
+
+    private boolean bounded() {
+        return untilEnd || !stopOffsets.isEmpty() || stopTimestamp != Long.MAX_VALUE;
+    }
+
+    /** Number of leading records in {@code slice} that are within the partition's bound. */
+    private int boundedLength(TopicPartition partition, List<ConsumerRecord<byte[], byte[]>> slice) {
+        if (finished.contains(partition)) {
+            return 0;
+        }
+        Long stopOffset = stopOffsets.get(partition);
+        if (stopOffset != null) {
+            if (slice.get(slice.size() - 1).offset() < stopOffset) {
+                return slice.size();
+            }
+            for (int i = 0; i < slice.size(); i++) {
+                if (slice.get(i).offset() >= stopOffset) {
+                    return i;
+                }
+            }
+        } else if (stopTimestamp != Long.MAX_VALUE) {
+            for (int i = 0; i < slice.size(); i++) {
+                if (slice.get(i).timestamp() > stopTimestamp) {
+                    return i;
+                }
+            }
+        }
+        return slice.size();
+    }
+
+    private void finish(TopicPartition partition) {
+        if (finished.add(partition)) {
+            consumer.pause(Collections.singleton(partition));
+        }
+    }
+
+    private boolean allFinished() {
+        Set<TopicPartition> assigned = consumer.assignment();
+        if (assigned.isEmpty()) {
+            return false;
+        }
+        if (untilEnd) {
+            List<TopicPartition> unseen = new ArrayList<>();
+            for (TopicPartition partition : assigned) {
+                if (!stopOffsets.containsKey(partition)) {
+                    unseen.add(partition);
+                }
+            }
+            if (!unseen.isEmpty()) {
+                stopOffsets.putAll(consumer.endOffsets(unseen));
+            }
+        }
+        // Positions also advance over control records and empty ranges that no batch reports.
+        boolean all = true;
+        for (TopicPartition partition : assigned) {
+            if (finished.contains(partition)) {
+                continue;
+            }
+            Long stopOffset = stopOffsets.get(partition);
+            if (stopOffset != null && consumer.position(partition) >= stopOffset) {
+                finish(partition);
+            } else {
+                all = false;
+            }
+        }
+        return all;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.kafka;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running counters of a consumer loop and the periodic report built from them.
+ *
+ * Counters are lock-free adders so they can be bumped on the hot path and read from other
+ * threads, such as a metrics scrape. {@link #report} touches the consumer and must run on
+ * the poll thread.
+ */
+public class ConsumerStats implements MetricsServer.Source {
+
+    private final LongAdder records = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder outputNanos = new LongAdder();
+    private final LongAccumulator maxOutputNanos = new LongAccumulator(Math::max, 0);
+    private final LogHistogram outputLatency = new LogHistogram();
+    private OutputPipeline output;
+
+    private long lastReport = System.nanoTime();
+    private long lastRecords;
+    private long lastBytes;
+    private long lastBatches;
+    private long lastOutputNanos;
+
+    /** Includes the queue depth and blocked time of {@code output} in reports. */
+    public void watch(OutputPipeline output) {
+        this.output = output;
+    }
+
+    /** Counts records written to the sink. */
+    public void written(long count, long size) {
+        records.add(count);
+        bytes.add(size);
+    }
+
+    /** Counts a poll batch that took {@code nanos} from poll() returning to its output being handed on. */
+    public void batch(long nanos) {
+        batches.increment();
+        outputNanos.add(nanos);
+        maxOutputNanos.accumulate(nanos);
+        outputLatency.record(nanos);
+    }
+
+    public long records() {
+        return records.sum();
+    }
+
+    public long bytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public void writeTo(MetricsWriter out) {
+        out.counter("kafka_avro_consumer_records", "Records written to the output.", records.sum());
+        out.counter("kafka_avro_consumer_bytes", "Serialized key and value bytes of the records written.", bytes.sum());
+        out.summary("kafka_avro_consumer_poll_to_output_seconds",
+                "Time from poll() returning until the batch's output was handed on.", outputLatency);
+    }
+
+    /** Rates and latencies since the previous report, output backlog and the lag of each assigned partition. */
+    public String report(Consumer<?, ?> consumer) {
+        long now = System.nanoTime();
+        double seconds = Math.max(now - lastReport, 1) / 1e9;
+        long recordCount = records.sum();
+        long byteCount = bytes.sum();
+        long batchCount = batches.sum();
+        long nanos = outputNanos.sum();
+        long intervalBatches = batchCount - lastBatches;
+
+        StringBuilder line = new StringBuilder(256);
+        line.append(String.format("[stats] %.0f records/s, %.2f MB/s, poll-to-output avg %.1f ms max %.1f ms",
+                (recordCount - lastRecords) / seconds,
+                (byteCount - lastBytes) / seconds / (1024 * 1024),
+                intervalBatches > 0 ? (nanos - lastOutputNanos) / 1e6 / intervalBatches : 0.0,
+                maxOutputNanos.getThenReset() / 1e6));
+        if (output != null) {
+            line.append(", output queue ").append(output.queuedBuffers()).append('/').append(output.bufferCount())
+                    .append(" buffers, blocked ").append(TimeUnit.NANOSECONDS.toMillis(output.blockedNanos())).append(" ms");
+        }
+        appendLag(line, consumer);
+
+        lastReport = now;
+        lastRecords = recordCount;
+        lastBytes = byteCount;
+        lastBatches = batchCount;
+        lastOutputNanos = nanos;
+        return line.toString();
+    }
+
+    private static void appendLag(StringBuilder line, Consumer<?, ?> consumer) {
+        List<TopicPartition> partitions = new ArrayList<>(consumer.assignment());
+        if (partitions.isEmpty()) {
+            return;
+        }
+        partitions.sort(Comparator.comparing(TopicPartition::topic).thenComparingInt(TopicPartition::partition));
+        Map<TopicPartition, Long> fromMetrics = null;
+        long total = 0;
+        StringBuilder perPartition = new StringBuilder();
+        for (TopicPartition partition : partitions) {
+            OptionalLong lag = consumer.currentLag(partition);
+            Long value = lag.isPresent() ? Long.valueOf(lag.getAsLong()) : null;
+            if (value == null) {
+                if (fromMetrics == null) {
+                    fromMetrics = recordsLag(consumer);
+                }
+                value = fromMetrics.get(partition);
+            }
+            perPartition.append(' ').append(partition).append('=');
+            if (value == null) {
+                perPartition.append('?');
+            } else {
+                perPartition.append(value);
+                total += value;
+            }
+        }
+        line.append("; lag ").append(total).append(':').append(perPartition);
+    }
+
+    /** The fetcher's {@code records-lag} metric by partition, for partitions currentLag() has no value for yet. */
+    private static Map<TopicPartition, Long> recordsLag(Consumer<?, ?> consumer) {
+        Map<TopicPartition, Long> lag = new HashMap<>();
+        for (Map.Entry<MetricName, ? extends Metric> metric : consumer.metrics().entrySet()) {
+            MetricName name = metric.getKey();
+            if (!"records-lag".equals(name.name())) {
+                continue;
+            }
+            String topic = name.tags().get("topic");
+            String partition = name.tags().get("partition");
+            if (topic != null && partition != null && metric.getValue().metricValue() instanceof Number value
+                    && !Double.isNaN(value.doubleValue())) {
+                lag.put(new TopicPartition(topic, Integer.parseInt(partition)), value.longValue());
+            }
+        }
+        return lag;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.kafka;
+
+import org.apache.avro.Schema;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Derives a reader schema that keeps only selected fields of a writer schema.
+ *
+ * Fields are given as dotted paths ({@code a,b.c,d}); a path into a nested record keeps
+ * only the named sub-fields, looking through nullable unions, arrays and maps on the way.
+ * The projected records keep their full names so Avro schema resolution can match them
+ * against the writer, which then skips every other field in the binary stream.
+ */
+public final class FieldProjection {
+
+    private final Node root = new Node();
+
+    private FieldProjection() {
+    }
+
+    public static FieldProjection parse(String spec) {
+        FieldProjection projection = new FieldProjection();
+        for (String path : spec.split(",")) {
+            path = path.trim();
+            if (path.isEmpty()) continue;
+            Node node = projection.root;
+            for (String name : path.split("\\.")) {
+                node = node.children.computeIfAbsent(name, n -> new Node());
+            }
+        }
+        if (projection.root.children.isEmpty()) {
+            throw new IllegalArgumentException("No fields given in '" + spec + "'");
+        }
+        return projection;
+    }
+
+    /** Whether the projection decodes everything at {@code path}: the path or one of its prefixes was selected. */
+    public boolean covers(String path) {
+        Node node = root;
+        for (String name : path.split("\\.")) {
+            node = node.children.get(name);
+            if (node == null) {
+                return false;
+            }
+            if (node.children.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Projects {@code writer} onto the selected fields. Paths that do not exist in the
+     * writer schema are left out and reported through {@code missing}.
+     */
+    public Schema apply(Schema writer, List<String> missing) {
+        if (writer.getType() != Schema.Type.RECORD) {
+            return writer;
+        }
+        return projectRecord(writer, root, "", missing);
+    }
+
+    private static Schema projectRecord(Schema record, Node node, String prefix, List<String> missing) {
+        List<Schema.Field> fields = new ArrayList<>(node.children.size());
+        for (Map.Entry<String, Node> entry : node.children.entrySet()) {
+            String path = prefix + entry.getKey();
+            Schema.Field field = record.getField(entry.getKey());
+            if (field == null) {
+                missing.add(path);
+                continue;
+            }
+            Node child = entry.getValue();
+            Schema projected = child.children.isEmpty()
+                    ? field.schema()
+                    : projectNested(field.schema(), child, path, missing);
+            fields.add(new Schema.Field(field, projected));
+        }
+        return Schema.createRecord(record.getName(), record.getDoc(), record.getNamespace(), record.isError(), fields);
+    }
+
+    private static Schema projectNested(Schema schema, Node node, String path, List<String> missing) {
+        switch (schema.getType()) {
+            case RECORD:
+                return projectRecord(schema, node, path + ".", missing);
+            case UNION:
+                List<Schema> branches = new ArrayList<>(schema.getTypes().size());
+                for (Schema branch : schema.getTypes()) {
+                    branches.add(isContainer(branch) ? projectNested(branch, node, path, missing) : branch);
+                }
+                return Schema.createUnion(branches);
+            case ARRAY:
+                return Schema.createArray(projectNested(schema.getElementType(), node, path, missing));
+            case MAP:
+                return Schema.createMap(projectNested(schema.getValueType(), node, path, missing));
+            default:
+                // Not a container: the sub-path cannot apply, keep the field whole.
+                missing.add(path + " (not a record)");
+                return schema;
+        }
+    }
+
+    private static boolean isContainer(Schema schema) {
+        Schema.Type type = schema.getType();
+        return type == Schema.Type.RECORD || type == Schema.Type.ARRAY || type == Schema.Type.MAP;
+    }
+
+    private static final class Node {
+        final Map<String, Node> children = new LinkedHashMap<>();
+    }
+}
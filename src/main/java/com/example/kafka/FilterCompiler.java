@@ -0,0 +1,512 @@
+package com.example.kafka;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.util.Utf8;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Recursive-descent parser that turns a filter expression into evaluator objects.
+ *
+ * Comparisons against a literal are compiled into dedicated evaluators (Utf8 byte
+ * comparisons for strings, primitive comparisons for numbers, precompiled patterns for
+ * {@code matches}), and record field paths cache the field position for the last seen
+ * schema, so the per-record cost is a few virtual calls and array reads.
+ */
+final class FilterCompiler {
+
+    private final String source;
+    private final List<String> tokens;
+    private int pos;
+
+    FilterCompiler(String source) {
+        this.source = source;
+        this.tokens = tokenize(source);
+    }
+
+    /** Dotted paths below {@code value} that the expression reads, in order of appearance. */
+    List<String> valuePaths() {
+        List<String> paths = new ArrayList<>();
+        for (String token : tokens) {
+            if (token.startsWith("value.")) {
+                String path = token.substring("value.".length());
+                if (!paths.contains(path)) {
+                    paths.add(path);
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Whether {@code path} can lead to a value in data of {@code schema}: each step names a
+     * record field, or any key of a map, looking through unions.
+     */
+    static boolean resolves(String path, Schema schema) {
+        return resolves(path.split("\\."), 0, schema);
+    }
+
+    private static boolean resolves(String[] names, int index, Schema schema) {
+        if (index == names.length) {
+            return true;
+        }
+        switch (schema.getType()) {
+            case RECORD:
+                Schema.Field field = schema.getField(names[index]);
+                return field != null && resolves(names, index + 1, field.schema());
+            case MAP:
+                return resolves(names, index + 1, schema.getValueType());
+            case UNION:
+                for (Schema branch : schema.getTypes()) {
+                    if (resolves(names, index, branch)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    RecordFilter compile() {
+        RecordFilter filter = parseOr();
+        if (pos < tokens.size()) {
+            throw error("Unexpected '" + tokens.get(pos) + "'");
+        }
+        return filter;
+    }
+
+    // ---- Grammar ----
+
+    private RecordFilter parseOr() {
+        RecordFilter left = parseAnd();
+        while (accept("||")) {
+            RecordFilter a = left;
+            RecordFilter b = parseAnd();
+            left = r -> a.test(r) || b.test(r);
+        }
+        return left;
+    }
+
+    private RecordFilter parseAnd() {
+        RecordFilter left = parseNot();
+        while (accept("&&")) {
+            RecordFilter a = left;
+            RecordFilter b = parseNot();
+            left = r -> a.test(r) && b.test(r);
+        }
+        return left;
+    }
+
+    private RecordFilter parseNot() {
+        if (accept("!")) {
+            RecordFilter inner = parseNot();
+            return r -> !inner.test(r);
+        }
+        if (accept("(")) {
+            RecordFilter inner = parseOr();
+            expect(")");
+            return inner;
+        }
+        return parseComparison();
+    }
+
+    private RecordFilter parseComparison() {
+        Operand left = parseOperand();
+        String op = pos < tokens.size() ? tokens.get(pos) : null;
+        if (op == null || !isComparison(op)) {
+            return r -> truthy(left.eval(r));
+        }
+        pos++;
+        Operand right = parseOperand();
+        return comparison(op, left, right);
+    }
+
+    private Operand parseOperand() {
+        if (pos >= tokens.size()) {
+            throw error("Unexpected end of expression");
+        }
+        String token = tokens.get(pos++);
+        char c = token.charAt(0);
+        if (c == '"' || c == '\'') {
+            return new Constant(token.substring(1));
+        }
+        if (c == '-' || Character.isDigit(c)) {
+            return new Constant(parseNumber(token));
+        }
+        switch (token) {
+            case "true":
+                return new Constant(Boolean.TRUE);
+            case "false":
+                return new Constant(Boolean.FALSE);
+            case "null":
+                return new Constant(null);
+            case "key":
+                return RecordView::key;
+            case "value":
+                return RecordView::value;
+            case "topic":
+                return r -> r.raw().topic();
+            case "partition":
+                return r -> (long) r.raw().partition();
+            case "offset":
+                return r -> r.raw().offset();
+            case "timestamp":
+                return r -> r.raw().timestamp();
+            default:
+                break;
+        }
+        if (token.startsWith("value.")) {
+            return new FieldPath(token.substring("value.".length()).split("\\."));
+        }
+        if (token.startsWith("headers.")) {
+            String name = token.substring("headers.".length());
+            return r -> header(r.raw(), name);
+        }
+        throw error("Unknown operand '" + token + "'");
+    }
+
+    // ---- Comparisons ----
+
+    /**
+     * {@code !=} is the negation of {@code ==}, so it holds when either side is null and the
+     * other is not. Every other operator is false when either side is null.
+     */
+    private RecordFilter comparison(String op, Operand left, Operand right) {
+        if (op.equals("!=")) {
+            RecordFilter equal = comparison("==", left, right);
+            return r -> !equal.test(r);
+        }
+        if (right instanceof Constant constant) {
+            Object literal = constant.value;
+            if (literal instanceof String s) {
+                return stringComparison(op, left, s);
+            }
+            if (literal instanceof Number n && isOrdering(op)) {
+                return numberComparison(op, left, n);
+            }
+            if (literal == null && op.equals("==")) {
+                return r -> left.eval(r) == null;
+            }
+        }
+        return genericComparison(op, left, right);
+    }
+
+    private RecordFilter stringComparison(String op, Operand left, String literal) {
+        byte[] bytes = literal.getBytes(StandardCharsets.UTF_8);
+        switch (op) {
+            case "==":
+                return r -> textEquals(left.eval(r), literal, bytes);
+            case "startsWith":
+                return r -> {
+                    Object v = left.eval(r);
+                    if (v instanceof Utf8 u) {
+                        return u.getByteLength() >= bytes.length
+                                && Arrays.equals(u.getBytes(), 0, bytes.length, bytes, 0, bytes.length);
+                    }
+                    return v != null && v.toString().startsWith(literal);
+                };
+            case "endsWith":
+                return r -> {
+                    Object v = left.eval(r);
+                    if (v instanceof Utf8 u) {
+                        int len = u.getByteLength();
+                        return len >= bytes.length
+                                && Arrays.equals(u.getBytes(), len - bytes.length, len, bytes, 0, bytes.length);
+                    }
+                    return v != null && v.toString().endsWith(literal);
+                };
+            case "contains":
+                return r -> {
+                    Object v = left.eval(r);
+                    return v != null && v.toString().contains(literal);
+                };
+            case "matches":
+                Pattern pattern = Pattern.compile(literal);
+                return r -> {
+                    Object v = left.eval(r);
+                    return v != null && pattern.matcher(v.toString()).matches();
+                };
+            default:
+                return r -> {
+                    Object v = left.eval(r);
+                    return v != null && ordered(op, v.toString().compareTo(literal));
+                };
+        }
+    }
+
+    private static RecordFilter numberComparison(String op, Operand left, Number literal) {
+        boolean integral = literal instanceof Long;
+        long longLiteral = literal.longValue();
+        double doubleLiteral = literal.doubleValue();
+        return r -> {
+            Object v = left.eval(r);
+            if (!(v instanceof Number n)) {
+                return false;
+            }
+            int cmp = integral && (n instanceof Long || n instanceof Integer)
+                    ? Long.compare(n.longValue(), longLiteral)
+                    : Double.compare(n.doubleValue(), doubleLiteral);
+            return ordered(op, cmp);
+        };
+    }
+
+    private RecordFilter genericComparison(String op, Operand left, Operand right) {
+        switch (op) {
+            case "startsWith":
+            case "endsWith":
+            case "contains":
+            case "matches":
+                return r -> {
+                    Object a = left.eval(r);
+                    Object b = right.eval(r);
+                    if (a == null || b == null) return false;
+                    String s = a.toString();
+                    String t = b.toString();
+                    switch (op) {
+                        case "startsWith": return s.startsWith(t);
+                        case "endsWith": return s.endsWith(t);
+                        case "contains": return s.contains(t);
+                        default: return s.matches(t);
+                    }
+                };
+            default:
+                return r -> {
+                    Object a = left.eval(r);
+                    Object b = right.eval(r);
+                    if (a == null || b == null) {
+                        return op.equals("==") && a == b;
+                    }
+                    int cmp = a instanceof Number x && b instanceof Number y
+                            ? Double.compare(x.doubleValue(), y.doubleValue())
+                            : a.toString().compareTo(b.toString());
+                    return ordered(op, cmp);
+                };
+        }
+    }
+
+    private static boolean ordered(String op, int cmp) {
+        switch (op) {
+            case "==": return cmp == 0;
+            case "!=": return cmp != 0;
+            case "<": return cmp < 0;
+            case "<=": return cmp <= 0;
+            case ">": return cmp > 0;
+            case ">=": return cmp >= 0;
+            default: throw new IllegalStateException("Not an ordering operator: " + op);
+        }
+    }
+
+    private static boolean textEquals(Object value, String literal, byte[] bytes) {
+        if (value instanceof Utf8 u) {
+            return u.getByteLength() == bytes.length && Arrays.equals(u.getBytes(), 0, bytes.length, bytes, 0, bytes.length);
+        }
+        if (value instanceof CharSequence cs) {
+            return literal.contentEquals(cs);
+        }
+        return value != null && literal.equals(value.toString());
+    }
+
+    private static boolean truthy(Object value) {
+        if (value instanceof Boolean b) return b;
+        return value != null;
+    }
+
+    private static boolean isOrdering(String op) {
+        switch (op) {
+            case "==": case "!=": case "<": case "<=": case ">": case ">=":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isComparison(String token) {
+        switch (token) {
+            case "==": case "!=": case "<": case "<=": case ">": case ">=":
+            case "startsWith": case "endsWith": case "contains": case "matches":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Object header(ConsumerRecord<byte[], byte[]> record, String name) {
+        Header last = null;
+        for (Header header : record.headers()) {
+            if (header.key().equals(name)) last = header;
+        }
+        return last == null || last.value() == null ? null : new String(last.value(), StandardCharsets.UTF_8);
+    }
+
+    // ---- Operands ----
+
+    @FunctionalInterface
+    private interface Operand {
+        Object eval(RecordView record);
+    }
+
+    private static final class Constant implements Operand {
+        final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object eval(RecordView record) {
+            return value;
+        }
+    }
+
+    /** A dotted path into the record value, resolved through nested records and maps. */
+    private static final class FieldPath implements Operand {
+        private final Step[] steps;
+
+        FieldPath(String[] names) {
+            steps = new Step[names.length];
+            for (int i = 0; i < names.length; i++) {
+                steps[i] = new Step(names[i]);
+            }
+        }
+
+        @Override
+        public Object eval(RecordView record) {
+            Object current = record.value();
+            for (Step step : steps) {
+                if (current == null) return null;
+                current = step.get(current);
+            }
+            return current;
+        }
+    }
+
+    private static final class Step {
+        private final String name;
+        private final Utf8 utf8Name;
+        // Position of the field in the most recently seen schema; replaced as a whole so sharing between threads is safe.
+        private Binding binding = new Binding(null, -1);
+
+        Step(String name) {
+            this.name = name;
+            this.utf8Name = new Utf8(name);
+        }
+
+        Object get(Object container) {
+            if (container instanceof IndexedRecord record) {
+                Schema schema = record.getSchema();
+                Binding b = binding;
+                if (b.schema != schema) {
+                    Schema.Field field = schema.getField(name);
+                    b = new Binding(schema, field == null ? -1 : field.pos());
+                    binding = b;
+                }
+                return b.position < 0 ? null : record.get(b.position);
+            }
+            if (container instanceof Map<?, ?> map) {
+                Object v = map.get(utf8Name);
+                return v != null ? v : map.get(name);
+            }
+            return null;
+        }
+    }
+
+    private static final class Binding {
+        final Schema schema;
+        final int position;
+
+        Binding(Schema schema, int position) {
+            this.schema = schema;
+            this.position = position;
+        }
+    }
+
+    // ---- Tokens ----
+
+    private static Object parseNumber(String token) {
+        if (token.indexOf('.') >= 0 || token.indexOf('e') >= 0 || token.indexOf('E') >= 0) {
+            return Double.parseDouble(token);
+        }
+        return Long.parseLong(token);
+    }
+
+    private boolean peekIs(String token) {
+        return pos < tokens.size() && tokens.get(pos).equals(token);
+    }
+
+    private boolean accept(String token) {
+        if (peekIs(token)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) {
+            throw error("Expected '" + token + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " in filter: " + source);
+    }
+
+    /** Splits the expression into tokens; string literals keep their opening quote as a type marker. */
+    private static List<String> tokenize(String s) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"' || c == '\'') {
+                StringBuilder literal = new StringBuilder().append(c);
+                i++;
+                while (i < s.length() && s.charAt(i) != c) {
+                    if (s.charAt(i) == '\\' && i + 1 < s.length()) i++;
+                    literal.append(s.charAt(i++));
+                }
+                if (i >= s.length()) {
+                    throw new IllegalArgumentException("Unterminated string in filter: " + s);
+                }
+                i++;
+                tokens.add(literal.toString());
+            } else if (Character.isDigit(c) || (c == '-' && i + 1 < s.length() && Character.isDigit(s.charAt(i + 1)))) {
+                int start = i++;
+                while (i < s.length() && (Character.isLetterOrDigit(s.charAt(i)) || s.charAt(i) == '.'
+                        || ((s.charAt(i) == '-' || s.charAt(i) == '+') && (s.charAt(i - 1) == 'e' || s.charAt(i - 1) == 'E')))) {
+                    i++;
+                }
+                tokens.add(s.substring(start, i));
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < s.length() && (Character.isJavaIdentifierPart(s.charAt(i)) || s.charAt(i) == '.' || s.charAt(i) == '-')) {
+                    i++;
+                }
+                tokens.add(s.substring(start, i));
+            } else {
+                String two = i + 1 < s.length() ? s.substring(i, i + 2) : "";
+                if (two.equals("==") || two.equals("!=") || two.equals("<=") || two.equals(">=")
+                        || two.equals("&&") || two.equals("||")) {
+                    tokens.add(two);
+                    i += 2;
+                } else if ("()<>!".indexOf(c) >= 0) {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else {
+                    throw new IllegalArgumentException("Unexpected character '" + c + "' in filter: " + s);
+                }
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end latency from each record's timestamp to its output being handed on, overall and
+ * per partition.
+ *
+ * Records are added on the poll thread. Totals since the start may be read from any thread;
+ * the interval histograms behind {@link #report(boolean)} are swapped on every interval report,
+ * so interval reports must also run on the poll thread. With an SLO, records later than it
+ * are counted exactly rather than read from the histogram's buckets, and the SLO counts as
+ * breached once more of them than its percentile allows have been added; at 100, the
+ * first late record breaches it.
+ */
+public class FreshnessStats implements MetricsServer.Source {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p99.9"};
+
+    private final LogHistogram total = new LogHistogram();
+    private final Map<TopicPartition, LogHistogram> totalByPartition = new ConcurrentHashMap<>();
+    private LogHistogram interval = new LogHistogram();
+    private Map<TopicPartition, LogHistogram> intervalByPartition = new ConcurrentHashMap<>();
+
+    private final long sloNanos;
+    private final double allowedOver;
+    private final LongAdder overSlo = new LongAdder();
+
+    /**
+     * @param sloMs         latency to count records beyond, or 0 for none
+     * @param sloPercentile percentage of records that must be within the SLO
+     */
+    public FreshnessStats(long sloMs, double sloPercentile) {
+        this.sloNanos = sloMs > 0 ? TimeUnit.MILLISECONDS.toNanos(sloMs) : Long.MAX_VALUE;
+        this.allowedOver = 1 - sloPercentile / 100;
+    }
+
+    /** Adds the records of {@code partition} that were handed to the output at {@code nowMs}. */
+    public void add(TopicPartition partition, List<? extends ConsumerRecord<?, ?>> records, long nowMs) {
+        LogHistogram partitionTotal = totalByPartition.computeIfAbsent(partition, p -> new LogHistogram());
+        LogHistogram partitionInterval = intervalByPartition.computeIfAbsent(partition, p -> new LogHistogram());
+        long over = 0;
+        for (ConsumerRecord<?, ?> record : records) {
+            if (record.timestamp() < 0) {
+                continue;
+            }
+            long nanos = TimeUnit.MILLISECONDS.toNanos(nowMs - record.timestamp());
+            total.record(nanos);
+            partitionTotal.record(nanos);
+            interval.record(nanos);
+            partitionInterval.record(nanos);
+            if (nanos > sloNanos) {
+                over++;
+            }
+        }
+        overSlo.add(over);
+    }
+
+    /** Latency of every record since the start. */
+    public LogHistogram total() {
+        return total;
+    }
+
+    /** Records later than the SLO since the start. */
+    public long overSlo() {
+        return overSlo.sum();
+    }
+
+    /** Whether more records since the start were later than the SLO than its percentile allows. */
+    public boolean breached() {
+        long over = overSlo.sum();
+        return over > 0 && over > allowedOver * total.count();
+    }
+
+    /**
+     * One line overall and one per partition, either since the start or since the previous
+     * interval report.
+     */
+    public String report(boolean sinceStart) {
+        LogHistogram overall = sinceStart ? total : interval;
+        Map<TopicPartition, LogHistogram> byPartition = sinceStart ? totalByPartition : intervalByPartition;
+        if (!sinceStart) {
+            interval = new LogHistogram();
+            intervalByPartition = new ConcurrentHashMap<>();
+        }
+
+        StringBuilder report = new StringBuilder(256);
+        appendLine(report, "all", overall);
+        List<TopicPartition> partitions = new ArrayList<>(byPartition.keySet());
+        partitions.sort(Comparator.comparing(TopicPartition::topic).thenComparingInt(TopicPartition::partition));
+        for (TopicPartition partition : partitions) {
+            appendLine(report, partition.toString(), byPartition.get(partition));
+        }
+        return report.toString();
+    }
+
+    private static void appendLine(StringBuilder report, String label, LogHistogram histogram) {
+        report.append("[latency] ").append(label).append(": ").append(histogram.count()).append(" records");
+        if (histogram.count() > 0) {
+            for (int i = 0; i < QUANTILES.length; i++) {
+                report.append(", ").append(QUANTILE_NAMES[i]).append(' ')
+                        .append(TimeUnit.NANOSECONDS.toMillis(histogram.percentile(QUANTILES[i]))).append(" ms");
+            }
+            report.append(", max ").append(TimeUnit.NANOSECONDS.toMillis(histogram.max())).append(" ms");
+        }
+        report.append(System.lineSeparator());
+    }
+
+    @Override
+    public void writeTo(MetricsWriter out) {
+        out.summary("kafka_avro_consumer_record_latency_seconds",
+                "Time from a record's timestamp until its output was handed on.", total);
+        String name = "kafka_avro_consumer_partition_record_latency_seconds";
+        out.family(name, "summary", "Time from a record's timestamp until its output was handed on, by partition.");
+        List<TopicPartition> partitions = new ArrayList<>(totalByPartition.keySet());
+        partitions.sort(Comparator.comparing(TopicPartition::topic).thenComparingInt(TopicPartition::partition));
+        for (TopicPartition partition : partitions) {
+            out.summarySamples(name, MetricsWriter.labels("topic", partition.topic(),
+                    "partition", Integer.toString(partition.partition())), totalByPartition.get(partition));
+        }
+        if (sloNanos != Long.MAX_VALUE) {
+            out.counter("kafka_avro_consumer_records_over_slo", "Records later than --slo-ms.", overSlo.sum());
+        }
+    }
+}
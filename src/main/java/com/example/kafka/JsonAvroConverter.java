@@ -0,0 +1,485 @@
+package com.example.kafka;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Converts the producer's JSON input lines into Avro generic data of the value schema.
+ *
+ * The schema is compiled once into a tree of converters with field positions, default
+ * values, enum symbols and union branches resolved up front, so converting a line only
+ * walks a {@link JsonParser}'s token stream, without building a {@code JsonNode} tree.
+ * Fields are matched by name in whatever order they arrive and unknown ones are skipped.
+ * Missing fields take their schema default, or null without one.
+ *
+ * A union value picks its branch from the JSON value's type: text goes to a string, enum
+ * (if it is one of the symbols), bytes or fixed branch; integers to int when they fit,
+ * else long, else a floating-point branch; objects to the first record whose fields
+ * without defaults are all present, else a map. The Avro JSON encoding's
+ * {@code {"<branch type name>": value}} wrapper selects its branch by name. A value no
+ * branch takes is rejected with an {@link IllegalArgumentException} naming the union.
+ *
+ * Reading a union object needs no lookahead when the first field names a branch (the
+ * wrapper, which must then be the only field) or when a single record or map branch can
+ * take it; an object that has to be matched against several record branches is buffered
+ * as tokens first.
+ *
+ * With reuse, records and arrays that occur at most once per value are refilled on every
+ * call instead of allocated; those inside arrays and maps, and recursive occurrences, are
+ * always fresh. A reused value is only valid until the next call, which suits a producer
+ * that serializes each value inside {@code send()}. Instances are not thread-safe.
+ */
+public final class JsonAvroConverter {
+
+    /** Converts a non-null JSON value. */
+    private interface Converter {
+        /** Reads the value starting at the parser's current token and leaves the parser on its last token. */
+        Object read(JsonParser parser) throws IOException;
+    }
+
+    private final Converter root;
+
+    private JsonAvroConverter(Converter root) {
+        this.root = root;
+    }
+
+    /**
+     * @param reuse refill the records and arrays returned by the previous call where that is safe
+     */
+    public static JsonAvroConverter compile(Schema schema, boolean reuse) {
+        return new JsonAvroConverter(new Compiler().compile(schema, reuse));
+    }
+
+    /**
+     * Reads the value starting at the parser's current token, leaving the parser on the
+     * value's last token.
+     */
+    public Object read(JsonParser parser) throws IOException {
+        return read(root, parser);
+    }
+
+    private static Object read(Converter converter, JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : converter.read(parser);
+    }
+
+    /**
+     * Whether the parser is on a scalar. A container is skipped instead, and a scalar type
+     * reads it as empty, zero or false.
+     */
+    private static boolean onScalar(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return false;
+        }
+        return true;
+    }
+
+    private static String text(JsonParser parser) throws IOException {
+        return onScalar(parser) ? parser.getValueAsString() : "";
+    }
+
+    private static final class Compiler {
+
+        /** Converters without reuse hold no state, so one per schema serves every occurrence. */
+        private final Map<Schema, Converter> shared = new IdentityHashMap<>();
+        /** Records whose reusing converter is being compiled, to catch recursive schemas. */
+        private final Set<Schema> reusing = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Converter compile(Schema schema, boolean reuse) {
+            switch (schema.getType()) {
+                case RECORD:
+                    return record(schema, reuse);
+                case ARRAY:
+                    return new ArrayConverter(schema, compile(schema.getElementType(), false), reuse);
+                case MAP:
+                    return new MapConverter(compile(schema.getValueType(), false));
+                case UNION:
+                    return union(schema, reuse);
+                case ENUM:
+                    return new EnumConverter(schema);
+                case FIXED:
+                    return parser -> fixed(schema, text(parser));
+                case BYTES:
+                    return parser -> bytes(text(parser));
+                case STRING:
+                    return JsonAvroConverter::text;
+                case INT:
+                    return parser -> onScalar(parser) ? parser.getValueAsInt() : 0;
+                case LONG:
+                    return parser -> onScalar(parser) ? parser.getValueAsLong() : 0L;
+                case FLOAT:
+                    return parser -> onScalar(parser) ? (float) parser.getValueAsDouble() : 0f;
+                case DOUBLE:
+                    return parser -> onScalar(parser) ? parser.getValueAsDouble() : 0d;
+                case BOOLEAN:
+                    return parser -> onScalar(parser) && parser.getValueAsBoolean();
+                default:
+                    return parser -> {
+                        parser.skipChildren();
+                        return null;
+                    };
+            }
+        }
+
+        private static GenericData.Fixed fixed(Schema schema, String text) {
+            return new GenericData.Fixed(schema, text.getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        private static ByteBuffer bytes(String text) {
+            return ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        private Converter record(Schema schema, boolean reuse) {
+            if (reuse && reusing.contains(schema)) {
+                // A record nested in itself would be refilled while its parent still holds it.
+                reuse = false;
+            }
+            if (!reuse && shared.containsKey(schema)) {
+                return shared.get(schema);
+            }
+            RecordConverter converter = new RecordConverter(schema, reuse);
+            if (reuse) {
+                reusing.add(schema);
+            } else {
+                shared.put(schema, converter);
+            }
+            List<Schema.Field> fields = schema.getFields();
+            for (int i = 0; i < fields.size(); i++) {
+                Schema.Field field = fields.get(i);
+                converter.names[i] = field.name();
+                converter.indexes.put(field.name(), i);
+                converter.positions[i] = field.pos();
+                converter.fields[i] = compile(field.schema(), reuse);
+                converter.required[i] = !field.hasDefaultValue();
+                if (field.hasDefaultValue()) {
+                    converter.defaults[i] = GenericData.get().getDefaultValue(field);
+                }
+            }
+            reusing.remove(schema);
+            return converter;
+        }
+
+        private Converter union(Schema schema, boolean reuse) {
+            UnionConverter union = new UnionConverter(schema.getTypes().stream()
+                    .map(Schema::getFullName).collect(Collectors.joining(", ", "[", "]")));
+            for (Schema branch : schema.getTypes()) {
+                if (branch.getType() == Schema.Type.NULL) {
+                    continue;
+                }
+                union.add(branch, compile(branch, reuse));
+            }
+            return union;
+        }
+    }
+
+    /** Branches of a union by the JSON value types they take, in union order. */
+    private static final class UnionConverter implements Converter {
+
+        private final List<Converter> text = new ArrayList<>();
+        private final List<RecordConverter> records = new ArrayList<>();
+        private final Map<String, Converter> byName = new HashMap<>();
+        private Converter intBranch;
+        private Converter longBranch;
+        private Converter floatingBranch;
+        private Converter booleanBranch;
+        private Converter arrayBranch;
+        private Converter mapBranch;
+        private final String name;
+
+        UnionConverter(String name) {
+            this.name = name;
+        }
+
+        void add(Schema branch, Converter converter) {
+            switch (branch.getType()) {
+                case STRING, ENUM, BYTES, FIXED -> text.add(converter);
+                case INT -> intBranch = intBranch != null ? intBranch : converter;
+                case LONG -> longBranch = longBranch != null ? longBranch : converter;
+                case FLOAT, DOUBLE -> floatingBranch = floatingBranch != null ? floatingBranch : converter;
+                case BOOLEAN -> booleanBranch = booleanBranch != null ? booleanBranch : converter;
+                case ARRAY -> arrayBranch = arrayBranch != null ? arrayBranch : converter;
+                case MAP -> mapBranch = mapBranch != null ? mapBranch : converter;
+                case RECORD -> records.add((RecordConverter) converter);
+                default -> {
+                }
+            }
+            switch (branch.getType()) {
+                case RECORD, ENUM, FIXED -> {
+                    byName.putIfAbsent(branch.getFullName(), converter);
+                    byName.putIfAbsent(branch.getName(), converter);
+                }
+                default -> byName.putIfAbsent(branch.getType().getName(), converter);
+            }
+        }
+
+        @Override
+        public Object read(JsonParser parser) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.START_OBJECT) {
+                return readObject(parser);
+            }
+            Converter branch = switch (token) {
+                case VALUE_STRING -> textBranch(parser.getText());
+                case VALUE_NUMBER_INT -> numberBranch(true, parser.getNumberType() == JsonParser.NumberType.INT);
+                case VALUE_NUMBER_FLOAT -> numberBranch(false, false);
+                case VALUE_TRUE, VALUE_FALSE -> booleanBranch;
+                case START_ARRAY -> arrayBranch;
+                default -> null;
+            };
+            if (branch == null) {
+                throw new IllegalArgumentException("No branch of union " + name + " takes " + parser.getText());
+            }
+            return branch.read(parser);
+        }
+
+        private Object readObject(JsonParser parser) throws IOException {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                Converter named = byName.get(name);
+                if (named != null) {
+                    parser.nextToken();
+                    Object value = JsonAvroConverter.read(named, parser);
+                    if (parser.nextToken() != JsonToken.END_OBJECT) {
+                        throw new IllegalArgumentException("Union wrapper has fields besides " + name);
+                    }
+                    return value;
+                }
+            }
+            if (records.size() == 1 && mapBranch == null) {
+                return records.get(0).readFields(parser, token);
+            }
+            if (records.isEmpty() && mapBranch instanceof MapConverter map) {
+                return map.readEntries(parser, token);
+            }
+
+            // Which record takes the object depends on fields that may not have arrived yet.
+            TokenBuffer buffer = new TokenBuffer(parser);
+            Set<String> names = new HashSet<>();
+            buffer.writeStartObject();
+            for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                names.add(parser.currentName());
+                buffer.copyCurrentStructure(parser);
+            }
+            buffer.writeEndObject();
+            Converter branch = objectBranch(names);
+            if (branch == null) {
+                throw new IllegalArgumentException("No branch of union " + name + " takes an object with fields " + names);
+            }
+            try (JsonParser buffered = buffer.asParser()) {
+                buffered.nextToken();
+                return branch.read(buffered);
+            }
+        }
+
+        private Converter textBranch(String value) {
+            for (Converter candidate : text) {
+                if (!(candidate instanceof EnumConverter symbols) || symbols.has(value)) {
+                    return candidate;
+                }
+            }
+            return null;
+        }
+
+        private Converter numberBranch(boolean integral, boolean fitsInt) {
+            if (integral) {
+                if (intBranch != null && (fitsInt || longBranch == null)) {
+                    return intBranch;
+                }
+                return longBranch != null ? longBranch : floatingBranch;
+            }
+            return floatingBranch != null ? floatingBranch : longBranch != null ? longBranch : intBranch;
+        }
+
+        private Converter objectBranch(Set<String> names) {
+            for (RecordConverter record : records) {
+                if (record.matches(names)) {
+                    return record;
+                }
+            }
+            return mapBranch != null ? mapBranch : records.isEmpty() ? null : records.get(0);
+        }
+    }
+
+    private static final class RecordConverter implements Converter {
+
+        private final Schema schema;
+        private final boolean reuse;
+        private final String[] names;
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final int[] positions;
+        private final Converter[] fields;
+        private final boolean[] required;
+        private final Object[] defaults;
+        private GenericData.Record record;
+
+        RecordConverter(Schema schema, boolean reuse) {
+            int size = schema.getFields().size();
+            this.schema = schema;
+            this.reuse = reuse;
+            this.names = new String[size];
+            this.positions = new int[size];
+            this.fields = new Converter[size];
+            this.required = new boolean[size];
+            this.defaults = new Object[size];
+        }
+
+        /** Whether every field without a default is present. */
+        boolean matches(Set<String> present) {
+            for (int i = 0; i < names.length; i++) {
+                if (required[i] && !present.contains(names[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private GenericData.Record record() {
+            GenericData.Record result = record != null ? record : new GenericData.Record(schema);
+            if (reuse) {
+                record = result;
+            }
+            return result;
+        }
+
+        @Override
+        public Object read(JsonParser parser) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                return readFields(parser, null);
+            }
+            return readFields(parser, parser.nextToken());
+        }
+
+        /** Reads an object's fields from {@code token}, the one after its start, to its end. */
+        Object readFields(JsonParser parser, JsonToken token) throws IOException {
+            GenericData.Record result = record();
+            for (int i = 0; i < fields.length; i++) {
+                result.put(positions[i], defaults[i]);
+            }
+            for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                Integer index = indexes.get(parser.currentName());
+                parser.nextToken();
+                if (index == null) {
+                    parser.skipChildren();
+                } else {
+                    result.put(positions[index], JsonAvroConverter.read(fields[index], parser));
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class ArrayConverter implements Converter {
+
+        private final Schema schema;
+        private final Converter elements;
+        private final boolean reuse;
+        private GenericData.Array<Object> array;
+
+        ArrayConverter(Schema schema, Converter elements, boolean reuse) {
+            this.schema = schema;
+            this.elements = elements;
+            this.reuse = reuse;
+        }
+
+        private GenericData.Array<Object> array() {
+            if (array != null) {
+                array.clear();
+                return array;
+            }
+            GenericData.Array<Object> result = new GenericData.Array<>(10, schema);
+            if (reuse) {
+                array = result;
+            }
+            return result;
+        }
+
+        @Override
+        public Object read(JsonParser parser) throws IOException {
+            GenericData.Array<Object> result = array();
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                return result;
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                result.add(JsonAvroConverter.read(elements, parser));
+            }
+            return result;
+        }
+    }
+
+    private static final class MapConverter implements Converter {
+
+        private final Converter values;
+
+        MapConverter(Converter values) {
+            this.values = values;
+        }
+
+        @Override
+        public Object read(JsonParser parser) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                return new HashMap<String, Object>();
+            }
+            return readEntries(parser, parser.nextToken());
+        }
+
+        /** Reads an object's entries from {@code token}, the one after its start, to its end. */
+        Object readEntries(JsonParser parser, JsonToken token) throws IOException {
+            Map<String, Object> map = new HashMap<>();
+            for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                String key = parser.currentName();
+                parser.nextToken();
+                map.put(key, JsonAvroConverter.read(values, parser));
+            }
+            return map;
+        }
+    }
+
+    /** Resolves symbols to one shared instance each. */
+    private static final class EnumConverter implements Converter {
+
+        private final Map<String, GenericData.EnumSymbol> symbols = new HashMap<>();
+
+        EnumConverter(Schema schema) {
+            for (String symbol : schema.getEnumSymbols()) {
+                symbols.put(symbol, new GenericData.EnumSymbol(schema, symbol));
+            }
+        }
+
+        boolean has(String symbol) {
+            return symbols.containsKey(symbol);
+        }
+
+        private GenericData.EnumSymbol symbol(String text) {
+            GenericData.EnumSymbol symbol = symbols.get(text);
+            if (symbol == null) {
+                throw new IllegalArgumentException("Not an enum symbol: " + text);
+            }
+            return symbol;
+        }
+
+        @Override
+        public Object read(JsonParser parser) throws IOException {
+            return symbol(text(parser));
+        }
+    }
+}
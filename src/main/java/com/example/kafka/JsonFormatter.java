@@ -0,0 +1,53 @@
+package com.example.kafka;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes one JSON object per line holding the record metadata, key and value.
+ *
+ * Each record is rendered into a private buffer first so a failure halfway through
+ * never leaves a truncated line in the output.
+ */
+public class JsonFormatter implements RecordFormatter {
+
+    private final JsonFactory jsonFactory;
+    private final AvroJsonWriter avroWriter = new AvroJsonWriter();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+
+    public JsonFormatter(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    @Override
+    public void format(RecordView record, OutputStream out) throws IOException {
+        ConsumerRecord<byte[], byte[]> raw = record.raw();
+        buffer.reset();
+        try (JsonGenerator gen = jsonFactory.createGenerator(buffer)) {
+            gen.writeStartObject();
+            gen.writeStringField("topic", raw.topic());
+            gen.writeNumberField("partition", raw.partition());
+            gen.writeNumberField("offset", raw.offset());
+            gen.writeNumberField("timestamp", raw.timestamp());
+
+            if (record.key() != null) gen.writeStringField("key", record.key());
+
+            Object value = record.value();
+            if (value instanceof GenericRecord) {
+                gen.writeFieldName("value");
+                avroWriter.write(value, gen);
+            } else if (value != null) {
+                gen.writeStringField("value", value.toString());
+            }
+            gen.writeEndObject();
+        }
+        buffer.write('\n');
+        buffer.writeTo(out);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.kafka;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Serves metrics in the OpenMetrics text format on {@code /metrics}.
+ *
+ * Scrapes are handled one at a time on the server's dispatcher thread, which renders every
+ * source into one reused buffer; the tool's counters are lock-free and Kafka client metrics
+ * are read through their thread-safe registry, so scrapes never touch the poll thread.
+ */
+public class MetricsServer implements Closeable {
+
+    private static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    /** Something that contributes metric families to a scrape. */
+    @FunctionalInterface
+    public interface Source {
+        void writeTo(MetricsWriter out);
+    }
+
+    private final HttpServer server;
+    private final List<Source> sources;
+    private final StringBuilder buffer = new StringBuilder(64 * 1024);
+    private final MetricsWriter writer = new MetricsWriter(buffer);
+
+    public MetricsServer(int port, List<Source> sources) throws IOException {
+        this.sources = sources;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext("/metrics", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * Exposes Kafka client metrics, named {@code <prefix>_<group>_<name>} with their tags as
+     * labels. {@code metrics} is the live map returned by the client's {@code metrics()}.
+     */
+    public static Source kafkaMetrics(String prefix, Map<MetricName, ? extends Metric> metrics) {
+        return new KafkaMetrics(prefix, metrics);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            buffer.setLength(0);
+            for (Source source : sources) {
+                source.writeTo(writer);
+            }
+            buffer.append("# EOF\n");
+            byte[] body = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    /** Kafka client metrics grouped into families, with names and labels rendered once per metric. */
+    private static final class KafkaMetrics implements Source {
+
+        private final String prefix;
+        private final Map<MetricName, ? extends Metric> metrics;
+        private Map<MetricName, String[]> rendered = new HashMap<>();
+
+        KafkaMetrics(String prefix, Map<MetricName, ? extends Metric> metrics) {
+            this.prefix = prefix;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void writeTo(MetricsWriter out) {
+            // A rebalance replaces per-partition metrics one for one, so the families are
+            // regrouped on every scrape; only names of metrics that still exist stay rendered.
+            Map<MetricName, String[]> current = new HashMap<>();
+            Map<String, List<Metric>> families = new TreeMap<>();
+            for (Metric metric : metrics.values()) {
+                String[] name = rendered.get(metric.metricName());
+                if (name == null) {
+                    name = render(metric.metricName());
+                }
+                current.put(metric.metricName(), name);
+                families.computeIfAbsent(name[0], n -> new ArrayList<>()).add(metric);
+            }
+            rendered = current;
+            for (Map.Entry<String, List<Metric>> family : families.entrySet()) {
+                out.family(family.getKey(), "gauge", null);
+                for (Metric metric : family.getValue()) {
+                    if (metric.metricValue() instanceof Number value && Double.isFinite(value.doubleValue())) {
+                        String[] name = current.get(metric.metricName());
+                        out.sample(name[0], name[1], value.doubleValue());
+                    }
+                }
+            }
+        }
+
+        private String[] render(MetricName metricName) {
+            String group = metricName.group().replaceFirst("-metrics$", "");
+            String name = MetricsWriter.name(prefix + "_" + group + "_" + metricName.name());
+            List<String> labels = new ArrayList<>();
+            new TreeMap<>(metricName.tags()).forEach((key, value) -> {
+                labels.add(MetricsWriter.name(key));
+                labels.add(value);
+            });
+            return new String[] {name, MetricsWriter.labels(labels.toArray(new String[0]))};
+        }
+    }
+}
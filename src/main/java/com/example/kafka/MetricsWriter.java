@@ -0,0 +1,106 @@
+package com.example.kafka;
+
+/**
+ * Appends metric families in the OpenMetrics text format to a reusable buffer.
+ *
+ * Names passed in must already be valid metric names; label strings are pre-rendered
+ * {@code {k="v",...}} blocks so callers can cache them between scrapes.
+ */
+public final class MetricsWriter {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final StringBuilder out;
+
+    MetricsWriter(StringBuilder out) {
+        this.out = out;
+    }
+
+    /** Starts a metric family; its samples must follow before the next family starts. */
+    public void family(String name, String type, String help) {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        if (help != null) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        }
+    }
+
+    public void sample(String name, String labels, double value) {
+        out.append(name).append(labels).append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    public void sample(String name, String labels, long value) {
+        out.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    public void counter(String name, String help, long value) {
+        family(name, "counter", help);
+        out.append(name).append("_total ").append(value).append('\n');
+    }
+
+    public void gauge(String name, String help, double value) {
+        family(name, "gauge", help);
+        sample(name, "", value);
+    }
+
+    /** A histogram of nanosecond values exposed as a summary in seconds. */
+    public void summary(String name, String help, LogHistogram histogram) {
+        family(name, "summary", help);
+        summarySamples(name, "", histogram);
+    }
+
+    /** The samples of one labelled series of a summary family started with {@link #family}. */
+    public void summarySamples(String name, String labels, LogHistogram histogram) {
+        String prefix = labels.isEmpty() ? "{" : labels.substring(0, labels.length() - 1) + ",";
+        for (int i = 0; i < QUANTILES.length; i++) {
+            out.append(name).append(prefix).append("quantile=\"").append(QUANTILE_LABELS[i]).append("\"} ")
+                    .append(histogram.percentile(QUANTILES[i]) / 1e9).append('\n');
+        }
+        out.append(name).append("_sum").append(labels).append(' ').append(histogram.sum() / 1e9).append('\n');
+        out.append(name).append("_count").append(labels).append(' ').append(histogram.count()).append('\n');
+    }
+
+    /** Renders a label block, escaping values as the format requires. */
+    public static String labels(String... namesAndValues) {
+        if (namesAndValues.length == 0) {
+            return "";
+        }
+        StringBuilder labels = new StringBuilder("{");
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0) {
+                labels.append(',');
+            }
+            labels.append(namesAndValues[i]).append("=\"");
+            String value = namesAndValues[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                switch (c) {
+                    case '\\' -> labels.append("\\\\");
+                    case '"' -> labels.append("\\\"");
+                    case '\n' -> labels.append("\\n");
+                    default -> labels.append(c);
+                }
+            }
+            labels.append('"');
+        }
+        return labels.append('}').toString();
+    }
+
+    /** Replaces every character that may not appear in a metric name with an underscore. */
+    public static String name(String raw) {
+        StringBuilder name = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_'
+                    || (i > 0 && c >= '0' && c <= '9');
+            name.append(valid ? c : '_');
+        }
+        return name.toString();
+    }
+}
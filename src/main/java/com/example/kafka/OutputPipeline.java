@@ -0,0 +1,312 @@
+package com.example.kafka;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched, asynchronous output stage between the poll loop and a byte channel.
+ *
+ * The poll thread appends formatted records into a large reusable buffer. Full buffers,
+ * and partially filled ones once the flush budget is reached, are handed over a bounded
+ * queue to a writer thread that drains them into the channel and returns them to the pool.
+ * The poll thread only blocks when every buffer is queued for writing; that time is
+ * accumulated in {@link #blockedNanos()} so a slow sink can be told apart from a slow broker.
+ *
+ * {@link #durableBytes()} tells how much of the appended output has reached the channel
+ * and, for a channel to a regular file, the disk; {@link #requestSync()} has the writer fsync
+ * once it has drained what is queued, and {@link #sync()} waits for that. Output to a pipe or
+ * terminal cannot be forced and counts as durable once written.
+ *
+ * Appending, flushing and syncing must happen on a single thread.
+ */
+public class OutputPipeline implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+    private static final ByteBuffer SYNC = ByteBuffer.allocate(0);
+
+    private final WritableByteChannel channel;
+    private final boolean forceOnSync;
+    private final int bufferCount;
+    private final BlockingQueue<ByteBuffer> free;
+    private final BlockingQueue<ByteBuffer> filled;
+    private final long flushBytes;
+    private final long flushIntervalNanos;
+    private final Thread writer;
+    private final OutputStream stream = new PipelineStream();
+
+    private ByteBuffer current;
+    private long lastFlush = System.nanoTime();
+    private long blockedNanos;
+    private long bytesAppended;
+    private volatile long bytesWritten;
+    private volatile long bytesDurable;
+    private volatile boolean syncPending;
+    private final Object syncLock = new Object();
+    private volatile IOException failure;
+    private boolean closed;
+
+    /**
+     * @param flushBytes      hand a buffer to the writer once it holds this many bytes; 0 flushes every batch
+     * @param flushIntervalMs hand a non-empty buffer to the writer after this long; 0 flushes every batch
+     * @param forceOnSync     fsync the channel on sync; only for a {@link FileChannel} to a regular file
+     */
+    public OutputPipeline(WritableByteChannel channel, int bufferSize, int bufferCount,
+                          long flushBytes, long flushIntervalMs, boolean forceOnSync) {
+        this.channel = channel;
+        this.forceOnSync = forceOnSync && channel instanceof FileChannel;
+        this.bufferCount = bufferCount;
+        this.free = new ArrayBlockingQueue<>(bufferCount);
+        // Room for every buffer plus one outstanding SYNC and the END marker.
+        this.filled = new ArrayBlockingQueue<>(bufferCount + 2);
+        this.flushBytes = flushBytes;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        for (int i = 0; i < bufferCount; i++) {
+            free.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+        this.current = free.poll();
+        this.writer = new Thread(this::drain, "output-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public OutputPipeline(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT, 0, 0, false);
+    }
+
+    /** A stream view that appends to the pipeline; closing it does nothing. */
+    public OutputStream stream() {
+        return stream;
+    }
+
+    public void write(byte[] bytes, int off, int len) throws IOException {
+        checkFailure();
+        while (len > 0) {
+            if (!current.hasRemaining()) {
+                handOff();
+            }
+            int n = Math.min(len, current.remaining());
+            current.put(bytes, off, n);
+            bytesAppended += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    public void write(byte[] bytes) throws IOException {
+        write(bytes, 0, bytes.length);
+    }
+
+    public void write(int b) throws IOException {
+        checkFailure();
+        if (!current.hasRemaining()) {
+            handOff();
+        }
+        current.put((byte) b);
+        bytesAppended++;
+    }
+
+    /**
+     * Called once per poll batch. Without a size or time budget everything appended so far is
+     * handed to the writer; otherwise the buffer is only handed over once a budget is exhausted.
+     */
+    public void endBatch() throws IOException {
+        checkFailure();
+        if (current.position() == 0) {
+            return;
+        }
+        boolean budgeted = flushBytes > 0 || flushIntervalNanos > 0;
+        if (!budgeted
+                || (flushBytes > 0 && current.position() >= flushBytes)
+                || (flushIntervalNanos > 0 && System.nanoTime() - lastFlush >= flushIntervalNanos)) {
+            handOff();
+        }
+    }
+
+    /** Hands any buffered bytes to the writer without waiting for them to reach the channel. */
+    public void flush() throws IOException {
+        checkFailure();
+        if (current.position() > 0) {
+            handOff();
+        }
+    }
+
+    /** Total time the appending thread spent waiting for a free buffer. */
+    public long blockedNanos() {
+        return blockedNanos;
+    }
+
+    /** Bytes the writer thread has drained into the channel so far. */
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /** Buffers handed over and waiting for the writer. */
+    public int queuedBuffers() {
+        return filled.size();
+    }
+
+    public int bufferCount() {
+        return bufferCount;
+    }
+
+    /** Bytes appended so far, whether or not they have been written. */
+    public long bytesAppended() {
+        return bytesAppended;
+    }
+
+    /** Bytes that have reached the channel and, if it is forced on sync, the disk. */
+    public long durableBytes() {
+        return bytesDurable;
+    }
+
+    /** Hands off buffered bytes and asks the writer to force everything it has written once drained. */
+    public void requestSync() throws IOException {
+        flush();
+        if (syncPending) {
+            return;
+        }
+        syncPending = true;
+        try {
+            filled.put(SYNC);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while requesting an output sync");
+        }
+    }
+
+    /** Waits until everything appended so far is durable. */
+    public void sync() throws IOException {
+        long target = bytesAppended;
+        while (bytesDurable < target) {
+            requestSync();
+            try {
+                synchronized (syncLock) {
+                    if (syncPending && failure == null) {
+                        syncLock.wait(100);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while syncing output");
+            }
+            checkFailure();
+        }
+    }
+
+    /** Flushes, waits for the writer to drain everything and closes the channel. */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (failure == null && current.position() > 0) {
+                handOff();
+            }
+            filled.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while draining output");
+        } finally {
+            channel.close();
+        }
+        checkFailure();
+    }
+
+    private void handOff() throws IOException {
+        current.flip();
+        try {
+            filled.put(current);
+            current = free.poll();
+            if (current == null) {
+                long start = System.nanoTime();
+                while ((current = free.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                    checkFailure();
+                }
+                blockedNanos += System.nanoTime() - start;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an output buffer");
+        }
+        lastFlush = System.nanoTime();
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Output failed: " + failure.getMessage(), failure);
+        }
+    }
+
+    private void drain() {
+        try {
+            ByteBuffer buffer;
+            while ((buffer = filled.take()) != END) {
+                if (buffer == SYNC) {
+                    force();
+                    continue;
+                }
+                try {
+                    if (failure == null) {
+                        while (buffer.hasRemaining()) {
+                            bytesWritten += channel.write(buffer);
+                        }
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    buffer.clear();
+                    free.add(buffer);
+                }
+                if (!forceOnSync) {
+                    bytesDurable = bytesWritten;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void force() {
+        long written = bytesWritten;
+        try {
+            if (failure == null && forceOnSync) {
+                ((FileChannel) channel).force(false);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        synchronized (syncLock) {
+            if (failure == null) {
+                bytesDurable = written;
+            }
+            syncPending = false;
+            syncLock.notifyAll();
+        }
+    }
+
+    private final class PipelineStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            OutputPipeline.this.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            OutputPipeline.this.write(b, off, len);
+        }
+    }
+}
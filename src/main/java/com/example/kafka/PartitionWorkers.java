@@ -0,0 +1,87 @@
+package com.example.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Decodes and formats each partition's slice of a poll batch on a fork-join pool.
+ *
+ * Every partition becomes one task that renders its records, in offset order, into a
+ * buffer owned by that partition. The poll thread then appends the finished buffers to
+ * the output in submission order, so records stay ordered within a partition while
+ * partitions are interleaved at batch granularity. Each pool thread keeps its own
+ * processor, so decoder and formatter state is never shared. Several instances may share
+ * one pool, which then outlives them.
+ */
+public class PartitionWorkers implements Closeable {
+
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+    private final ThreadLocal<RecordProcessor> processors;
+    private final Map<TopicPartition, ByteArrayOutputStream> buffers = new HashMap<>();
+    private final List<Future<ByteArrayOutputStream>> pending = new ArrayList<>();
+
+    public PartitionWorkers(int threads, Supplier<RecordProcessor> processorFactory) {
+        this(new ForkJoinPool(threads), true, processorFactory);
+    }
+
+    /** Runs on a pool shared with other instances; closing this instance leaves it running. */
+    public PartitionWorkers(ForkJoinPool pool, Supplier<RecordProcessor> processorFactory) {
+        this(pool, false, processorFactory);
+    }
+
+    private PartitionWorkers(ForkJoinPool pool, boolean ownsPool, Supplier<RecordProcessor> processorFactory) {
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        this.processors = ThreadLocal.withInitial(processorFactory);
+    }
+
+    public void submit(TopicPartition partition, List<ConsumerRecord<byte[], byte[]>> slice) {
+        ByteArrayOutputStream buffer = buffers.computeIfAbsent(partition, p -> new ByteArrayOutputStream(64 * 1024));
+        pending.add(pool.submit(() -> {
+            buffer.reset();
+            RecordProcessor processor = processors.get();
+            for (ConsumerRecord<byte[], byte[]> record : slice) {
+                processor.process(record, buffer);
+            }
+            return buffer;
+        }));
+    }
+
+    /** Waits for every submitted slice and writes the results to {@code out} in submission order. */
+    public void drainTo(OutputStream out) throws IOException {
+        try {
+            for (Future<ByteArrayOutputStream> result : pending) {
+                result.get().writeTo(out);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for partition workers");
+        } catch (ExecutionException e) {
+            throw new IOException("Partition worker failed", e.getCause());
+        } finally {
+            pending.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.kafka;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.apache.avro.Schema;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends one record per non-blank input line to a topic.
+ *
+ * With a value schema each line is converted to Avro generic data by a converter compiled
+ * once for the schema, reading the line's JSON tokens directly rather than through a
+ * {@code JsonNode} tree; without one the line itself is the value. The converter refills
+ * the previous line's records and arrays, which is safe because the producer serializes
+ * each value inside {@code send()}. Lines that fail to convert are reported on stderr and
+ * skipped. Sends and acknowledgements are counted and timed; counters may be read from any
+ * thread.
+ *
+ * {@link #stop()} may be called from any thread, typically a shutdown hook before it closes
+ * the producer; the loop then returns before sending another line.
+ */
+public class ProduceLoop implements MetricsServer.Source {
+
+    private final Producer<String, Object> producer;
+    private final String topic;
+    private final JsonAvroConverter converter;
+    private final PrintStream acks;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private final AtomicLong unacked = new AtomicLong();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder acked = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LogHistogram ackNanos = new LogHistogram();
+
+    private volatile boolean stopping;
+
+    /**
+     * @param schema value schema to convert JSON lines into, or null to send lines as they are
+     * @param acks   receives a line per acknowledged record; null prints nothing
+     */
+    public ProduceLoop(Producer<String, Object> producer, String topic, Schema schema, PrintStream acks) {
+        this.producer = producer;
+        this.topic = topic;
+        this.converter = schema != null ? JsonAvroConverter.compile(schema, true) : null;
+        this.acks = acks;
+    }
+
+    /** Sends every line of {@code input} until it ends or the loop is stopped, without waiting for acknowledgements. */
+    public void run(BufferedReader input) throws IOException {
+        String line;
+        while (!stopping && (line = input.readLine()) != null) {
+            if (line.trim().isEmpty()) continue;
+
+            Object value;
+            if (converter != null) {
+                try (JsonParser parser = jsonFactory.createParser(line)) {
+                    parser.nextToken();
+                    value = converter.read(parser);
+                } catch (Exception e) {
+                    System.err.println("Invalid JSON for Avro schema: " + e.getMessage());
+                    continue;
+                }
+            } else {
+                value = line;
+            }
+            if (!send(value)) {
+                break;
+            }
+        }
+    }
+
+    /** Makes a running loop return without sending another record. */
+    public void stop() {
+        stopping = true;
+    }
+
+    /** Returns false, without sending, once the loop is stopped. */
+    private boolean send(Object value) {
+        if (stopping) {
+            return false;
+        }
+        ProducerRecord<String, Object> record = new ProducerRecord<>(topic, value);
+        unacked.incrementAndGet();
+        sent.increment();
+        long sendStart = System.nanoTime();
+        try {
+            producer.send(record, (metadata, exception) -> {
+                ackNanos.record(System.nanoTime() - sendStart);
+                if (exception != null) {
+                    failed.increment();
+                    System.err.println("Error producing message: " + exception.getMessage());
+                } else {
+                    acked.increment();
+                    unacked.decrementAndGet();
+                    if (acks != null) {
+                        acks.println("Produced to " + metadata.topic() + "-" + metadata.partition() + "@" + metadata.offset());
+                    }
+                }
+            });
+        } catch (IllegalStateException e) {
+            unacked.decrementAndGet();
+            sent.decrement();
+            if (stopping) {
+                // Stopped and closed between the check above and the send.
+                return false;
+            }
+            throw e;
+        }
+        return true;
+    }
+
+    /** Records sent but not acknowledged, including those that failed. */
+    public long unacked() {
+        return unacked.get();
+    }
+
+    public long sent() {
+        return sent.sum();
+    }
+
+    public long acked() {
+        return acked.sum();
+    }
+
+    @Override
+    public void writeTo(MetricsWriter out) {
+        out.counter("kafka_avro_producer_sent", "Records handed to the producer.", sent.sum());
+        out.counter("kafka_avro_producer_acked", "Records acknowledged by the broker.", acked.sum());
+        out.counter("kafka_avro_producer_failed", "Records that failed to send.", failed.sum());
+        out.summary("kafka_avro_producer_send_ack_seconds",
+                "Time from send() until the record was acknowledged or failed.", ackNanos);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.kafka;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/** Writes the record value's string form followed by a newline. */
+public class RawFormatter implements RecordFormatter {
+
+    @Override
+    public void format(RecordView record, OutputStream out) throws IOException {
+        byte[] bytes = String.valueOf(record.value()).getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        out.write('\n');
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.kafka;
+
+import org.apache.avro.Schema;
+
+import java.util.List;
+
+/**
+ * A compiled predicate over consumed records, evaluated before any formatting work.
+ *
+ * Expressions are parsed once by {@link #compile(String)} into a tree of specialized
+ * evaluators. Compiled filters are stateless apart from benign caches and may be shared
+ * between threads.
+ *
+ * <pre>
+ * value.status == "FAILED" &amp;&amp; key startsWith "eu-"
+ * (value.amount &gt;= 1000 || headers.source == 'batch') &amp;&amp; !(value.user.id matches "test-.*")
+ * </pre>
+ *
+ * Operands are {@code key}, {@code value} and dotted paths below it, {@code topic},
+ * {@code partition}, {@code offset}, {@code timestamp}, {@code headers.<name>}, and string,
+ * number, {@code true}, {@code false} and {@code null} literals. Operators are
+ * {@code == != < <= > >= startsWith endsWith contains matches && || !}.
+ *
+ * A missing field or header is null. {@code ==} holds between two nulls, {@code !=} is
+ * always the negation of {@code ==}, and every other comparison with a null is false.
+ */
+@FunctionalInterface
+public interface RecordFilter {
+
+    boolean test(RecordView record);
+
+    /**
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    static RecordFilter compile(String expression) {
+        return new FilterCompiler(expression).compile();
+    }
+
+    /**
+     * Dotted field paths below {@code value} that the expression reads, without the
+     * {@code value.} prefix.
+     *
+     * @throws IllegalArgumentException if the expression cannot be tokenized
+     */
+    static List<String> valuePaths(String expression) {
+        return new FilterCompiler(expression).valuePaths();
+    }
+
+    /** Whether a path from {@link #valuePaths} names a field that values of {@code schema} can have. */
+    static boolean resolves(String path, Schema schema) {
+        return FilterCompiler.resolves(path, schema);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.kafka;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Renders one consumed record into an output stream.
+ *
+ * Implementations write a record completely or not at all, and are used by a single
+ * thread at a time.
+ */
+public interface RecordFormatter {
+
+    void format(RecordView record, OutputStream out) throws IOException;
+}
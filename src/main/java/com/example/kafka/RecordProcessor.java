@@ -0,0 +1,63 @@
+package com.example.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Decodes, filters and formats raw records on one thread.
+ *
+ * Records that fail to decode or format are reported on stderr and skipped; failures
+ * of the output stream itself are propagated.
+ */
+public class RecordProcessor {
+
+    private final RecordView view;
+    private final RecordFilter filter;
+    private final RecordFormatter formatter;
+    private final LogHistogram formatNanos;
+
+    /**
+     * @param filter records it rejects are dropped before formatting; null keeps everything
+     */
+    public RecordProcessor(Deserializer<String> keyDeserializer, Deserializer<?> valueDeserializer,
+                           RecordFilter filter, RecordFormatter formatter) {
+        this(keyDeserializer, valueDeserializer, filter, formatter, null, null);
+    }
+
+    /**
+     * @param decodeNanos receives the time spent decoding each value; null skips timing
+     * @param formatNanos receives the time spent formatting each record, including any decoding
+     *                    it triggers; null skips timing
+     */
+    public RecordProcessor(Deserializer<String> keyDeserializer, Deserializer<?> valueDeserializer,
+                           RecordFilter filter, RecordFormatter formatter,
+                           LogHistogram decodeNanos, LogHistogram formatNanos) {
+        this.view = new RecordView(keyDeserializer, valueDeserializer, decodeNanos);
+        this.filter = filter;
+        this.formatter = formatter;
+        this.formatNanos = formatNanos;
+    }
+
+    public void process(ConsumerRecord<byte[], byte[]> record, OutputStream out) throws IOException {
+        view.reset(record);
+        try {
+            if (filter != null && !filter.test(view)) {
+                return;
+            }
+            if (formatNanos == null) {
+                formatter.format(view, out);
+            } else {
+                long start = System.nanoTime();
+                formatter.format(view, out);
+                formatNanos.record(System.nanoTime() - start);
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            System.err.println("Error formatting record " + record.topic() + "-" + record.partition()
+                    + "@" + record.offset() + ": " + e.getMessage());
+        }
+    }
+}
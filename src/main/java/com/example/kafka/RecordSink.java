@@ -0,0 +1,31 @@
+package com.example.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Destination for consumed records.
+ *
+ * The poll loop hands over each partition's slice of a batch and then calls
+ * {@link #endBatch()} once per poll, including polls that returned nothing.
+ */
+public interface RecordSink extends Closeable {
+
+    /** Accepts one partition's records from the current poll batch, in offset order. */
+    void write(TopicPartition partition, List<ConsumerRecord<byte[], byte[]>> records) throws IOException;
+
+    void endBatch() throws IOException;
+
+    /**
+     * The offset after the last record, per partition, whose output has reached its
+     * destination and, for files, stable storage. Without {@code wait} this returns what is
+     * already durable and may start making newer output durable for a later call; with
+     * {@code wait} it makes everything written so far durable first.
+     */
+    Map<TopicPartition, Long> durableOffsets(boolean wait) throws IOException;
+}
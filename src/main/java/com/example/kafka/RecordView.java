@@ -0,0 +1,73 @@
+package com.example.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * A raw consumer record with lazily decoded key and value.
+ *
+ * Nothing is deserialized until {@link #key()} or {@link #value()} is first called, so
+ * stages that only need metadata or the original bytes never pay for decoding.
+ * Instances are reused from record to record and are not thread-safe.
+ */
+public final class RecordView {
+
+    private final Deserializer<String> keyDeserializer;
+    private final Deserializer<?> valueDeserializer;
+    private final LogHistogram decodeNanos;
+
+    private ConsumerRecord<byte[], byte[]> raw;
+    private String key;
+    private boolean keyDecoded;
+    private Object value;
+    private boolean valueDecoded;
+
+    public RecordView(Deserializer<String> keyDeserializer, Deserializer<?> valueDeserializer) {
+        this(keyDeserializer, valueDeserializer, null);
+    }
+
+    /**
+     * @param decodeNanos receives the time spent decoding each value; null skips timing
+     */
+    public RecordView(Deserializer<String> keyDeserializer, Deserializer<?> valueDeserializer,
+                      LogHistogram decodeNanos) {
+        this.keyDeserializer = keyDeserializer;
+        this.valueDeserializer = valueDeserializer;
+        this.decodeNanos = decodeNanos;
+    }
+
+    public RecordView reset(ConsumerRecord<byte[], byte[]> raw) {
+        this.raw = raw;
+        this.key = null;
+        this.keyDecoded = false;
+        this.value = null;
+        this.valueDecoded = false;
+        return this;
+    }
+
+    public ConsumerRecord<byte[], byte[]> raw() {
+        return raw;
+    }
+
+    public String key() {
+        if (!keyDecoded) {
+            key = keyDeserializer.deserialize(raw.topic(), raw.key());
+            keyDecoded = true;
+        }
+        return key;
+    }
+
+    public Object value() {
+        if (!valueDecoded) {
+            if (decodeNanos == null) {
+                value = valueDeserializer.deserialize(raw.topic(), raw.value());
+            } else {
+                long start = System.nanoTime();
+                value = valueDeserializer.deserialize(raw.topic(), raw.value());
+                decodeNanos.record(System.nanoTime() - start);
+            }
+            valueDecoded = true;
+        }
+        return value;
+    }
+}
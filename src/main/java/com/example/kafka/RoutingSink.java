@@ -0,0 +1,95 @@
+package com.example.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Routes each partition's records to a sink chosen by a routing key, opening sinks
+ * lazily the first time their key is seen.
+ */
+public class RoutingSink<K> implements RecordSink {
+
+    /** Opens the sink for one routing key. */
+    @FunctionalInterface
+    public interface SinkFactory<K> {
+        RecordSink open(K key) throws IOException;
+    }
+
+    private final Function<TopicPartition, K> route;
+    private final SinkFactory<K> factory;
+    private final Map<TopicPartition, RecordSink> byPartition = new HashMap<>();
+    private final Map<K, RecordSink> sinks = new HashMap<>();
+
+    public RoutingSink(Function<TopicPartition, K> route, SinkFactory<K> factory) {
+        this.route = route;
+        this.factory = factory;
+    }
+
+    /** One sink per partition. */
+    public static RoutingSink<TopicPartition> perPartition(SinkFactory<TopicPartition> factory) {
+        return new RoutingSink<>(Function.identity(), factory);
+    }
+
+    @Override
+    public void write(TopicPartition partition, List<ConsumerRecord<byte[], byte[]>> records) throws IOException {
+        RecordSink sink = byPartition.get(partition);
+        if (sink == null) {
+            K key = route.apply(partition);
+            sink = sinks.get(key);
+            if (sink == null) {
+                sink = factory.open(key);
+                sinks.put(key, sink);
+            }
+            byPartition.put(partition, sink);
+        }
+        sink.write(partition, records);
+    }
+
+    @Override
+    public void endBatch() throws IOException {
+        for (RecordSink sink : sinks.values()) {
+            sink.endBatch();
+        }
+    }
+
+    @Override
+    public Map<TopicPartition, Long> durableOffsets(boolean wait) throws IOException {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        for (RecordSink sink : sinks.values()) {
+            offsets.putAll(sink.durableOffsets(wait));
+        }
+        return offsets;
+    }
+
+    /** The sinks opened so far, by routing key. */
+    public Map<K, RecordSink> sinks() {
+        return sinks;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (RecordSink sink : sinks.values()) {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        sinks.clear();
+        byPartition.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
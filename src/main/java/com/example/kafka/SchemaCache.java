@@ -0,0 +1,161 @@
+package com.example.kafka;
+
+import io.confluent.kafka.schemaregistry.ParsedSchema;
+import io.confluent.kafka.schemaregistry.avro.AvroSchema;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Schema lookups backed by memory, an optional local directory, and Schema Registry,
+ * in that order.
+ *
+ * Schemas are stored on disk per registry URL as {@code ids/<id>.avsc}, and subject
+ * registrations as {@code subjects/<subject>/<fingerprint>.id}, where the fingerprint is a
+ * 64-bit fingerprint of the schema's full JSON, so a schema that differs only in a default,
+ * doc, alias or logical type is looked up and registered on its own. Registry hits are
+ * written through, so once a schema has been seen, later runs need no registry round trip
+ * for it and keep working while the registry is unavailable. Files are replaced
+ * atomically, so several processes may share one directory.
+ *
+ * Instances are thread-safe.
+ */
+public class SchemaCache implements MetricsServer.Source {
+
+    private final SchemaRegistryClient registry;
+    private final Path idsDir;
+    private final Path subjectsDir;
+    private final Map<Integer, Schema> byId = new ConcurrentHashMap<>();
+    private final Map<String, Integer> bySubject = new ConcurrentHashMap<>();
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder registryLookups = new LongAdder();
+
+    /**
+     * @param directory root of the on-disk cache, or null to cache in memory only
+     */
+    public SchemaCache(SchemaRegistryClient registry, String registryUrl, Path directory) throws IOException {
+        this.registry = registry;
+        if (directory != null) {
+            Path root = directory.resolve(registryUrl.replaceAll("[^A-Za-z0-9._-]", "_"));
+            this.idsDir = Files.createDirectories(root.resolve("ids"));
+            this.subjectsDir = Files.createDirectories(root.resolve("subjects"));
+        } else {
+            this.idsDir = null;
+            this.subjectsDir = null;
+        }
+    }
+
+    /** The writer schema registered under {@code id}. */
+    public Schema byId(int id) throws IOException {
+        Schema schema = byId.get(id);
+        if (schema != null) {
+            memoryHits.increment();
+            return schema;
+        }
+        Path file = idsDir != null ? idsDir.resolve(id + ".avsc") : null;
+        if (file != null && Files.exists(file)) {
+            diskHits.increment();
+            schema = new Schema.Parser().parse(Files.readString(file));
+        } else {
+            registryLookups.increment();
+            schema = fetch(id);
+            if (file != null) {
+                writeAtomically(file, schema.toString());
+            }
+        }
+        Schema existing = byId.putIfAbsent(id, schema);
+        return existing != null ? existing : schema;
+    }
+
+    /**
+     * The ID of {@code schema} under {@code subject}, registering it first when
+     * {@code autoRegister} is set.
+     *
+     * @param normalize have the registry normalize the schema before it is looked up or registered
+     */
+    public int idFor(String subject, Schema schema, boolean autoRegister, boolean normalize) throws IOException {
+        String fingerprint = Long.toHexString(
+                SchemaNormalization.fingerprint64(schema.toString().getBytes(StandardCharsets.UTF_8)))
+                + (normalize ? "-normalized" : "");
+        String key = subject + "/" + fingerprint;
+        Integer id = bySubject.get(key);
+        if (id != null) {
+            memoryHits.increment();
+            return id;
+        }
+        Path file = subjectsDir != null ? subjectsDir.resolve(safeName(subject)).resolve(fingerprint + ".id") : null;
+        if (file != null && Files.exists(file)) {
+            diskHits.increment();
+            id = Integer.parseInt(Files.readString(file).trim());
+        } else {
+            registryLookups.increment();
+            id = resolve(subject, schema, autoRegister, normalize);
+            if (file != null) {
+                Files.createDirectories(file.getParent());
+                writeAtomically(file, Integer.toString(id));
+            }
+        }
+        bySubject.put(key, id);
+        byId.putIfAbsent(id, schema);
+        return id;
+    }
+
+    @Override
+    public void writeTo(MetricsWriter out) {
+        out.counter("schema_cache_memory_hits", "Schema lookups answered from memory.", memoryHits.sum());
+        out.counter("schema_cache_disk_hits", "Schema lookups answered from the cache directory.", diskHits.sum());
+        out.counter("schema_cache_registry_lookups", "Schema lookups that went to Schema Registry.",
+                registryLookups.sum());
+    }
+
+    private Schema fetch(int id) throws IOException {
+        try {
+            ParsedSchema parsed = registry.getSchemaById(id);
+            if (!(parsed.rawSchema() instanceof Schema schema)) {
+                throw new IOException("Schema " + id + " is not an Avro schema");
+            }
+            return schema;
+        } catch (RestClientException e) {
+            throw new IOException("Error fetching schema " + id + ": " + e.getMessage(), e);
+        }
+    }
+
+    private int resolve(String subject, Schema schema, boolean autoRegister, boolean normalize) throws IOException {
+        try {
+            AvroSchema parsed = new AvroSchema(schema);
+            return autoRegister ? registry.register(subject, parsed, normalize) : registry.getId(subject, parsed, normalize);
+        } catch (RestClientException e) {
+            throw new IOException("Error resolving schema for subject " + subject + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String safeName(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private static void writeAtomically(Path file, String content) throws IOException {
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(tmp, content, StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Formats records into an {@link OutputPipeline}, either inline on the poll thread or
+ * on {@link PartitionWorkers} when a worker count or a shared worker pool is given.
+ *
+ * After every batch the offsets it covered are recorded against the pipeline position
+ * they end at, so they count as durable once the pipeline has made that position durable.
+ * Until durable offsets are first asked for, those marks are merged into one, so a sink
+ * nobody commits from keeps no per-batch history.
+ */
+public class StreamSink implements RecordSink {
+
+    private final OutputPipeline output;
+    private final RecordProcessor processor;
+    private final PartitionWorkers workers;
+    private final ArrayDeque<Mark> marks = new ArrayDeque<>();
+    private Map<TopicPartition, Long> unmarked = new HashMap<>();
+    private final Map<TopicPartition, Long> durable = new HashMap<>();
+    private boolean tracking;
+
+    /** Offsets whose output ends at {@code position} in the pipeline. */
+    private record Mark(long position, Map<TopicPartition, Long> offsets) {
+    }
+
+    public StreamSink(OutputPipeline output, Supplier<RecordProcessor> processorFactory, int workers) {
+        this(output, processorFactory, workers > 0 ? new PartitionWorkers(workers, processorFactory) : null);
+    }
+
+    /** @param workerPool pool shared with other sinks, or null to format on the poll thread */
+    public StreamSink(OutputPipeline output, Supplier<RecordProcessor> processorFactory, ForkJoinPool workerPool) {
+        this(output, processorFactory, workerPool != null ? new PartitionWorkers(workerPool, processorFactory) : null);
+    }
+
+    private StreamSink(OutputPipeline output, Supplier<RecordProcessor> processorFactory, PartitionWorkers workers) {
+        this.output = output;
+        this.processor = workers != null ? null : processorFactory.get();
+        this.workers = workers;
+    }
+
+    @Override
+    public void write(TopicPartition partition, List<ConsumerRecord<byte[], byte[]>> records) throws IOException {
+        if (!records.isEmpty()) {
+            unmarked.put(partition, records.get(records.size() - 1).offset() + 1);
+        }
+        if (workers != null) {
+            workers.submit(partition, records);
+            return;
+        }
+        for (ConsumerRecord<byte[], byte[]> record : records) {
+            processor.process(record, output.stream());
+        }
+    }
+
+    @Override
+    public void endBatch() throws IOException {
+        mark();
+        output.endBatch();
+    }
+
+    @Override
+    public Map<TopicPartition, Long> durableOffsets(boolean wait) throws IOException {
+        tracking = true;
+        if (wait) {
+            mark();
+            output.sync();
+        }
+        long position = output.durableBytes();
+        while (!marks.isEmpty() && marks.peek().position() <= position) {
+            durable.putAll(marks.poll().offsets());
+        }
+        if (!wait && !marks.isEmpty()) {
+            output.requestSync();
+        }
+        return durable;
+    }
+
+    /** Moves the current batch's output into the pipeline and records where it ends. */
+    private void mark() throws IOException {
+        if (workers != null) {
+            workers.drainTo(output.stream());
+        }
+        if (unmarked.isEmpty()) {
+            return;
+        }
+        if (!tracking && !marks.isEmpty()) {
+            Map<TopicPartition, Long> offsets = marks.pollLast().offsets();
+            offsets.putAll(unmarked);
+            unmarked.clear();
+            marks.add(new Mark(output.bytesAppended(), offsets));
+        } else {
+            marks.add(new Mark(output.bytesAppended(), unmarked));
+            unmarked = new HashMap<>();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (workers != null) {
+                workers.drainTo(output.stream());
+                workers.close();
+            }
+        } finally {
+            output.close();
+        }
+    }
+}
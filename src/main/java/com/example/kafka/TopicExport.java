@@ -0,0 +1,249 @@
+package com.example.kafka;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Exports a point-in-time snapshot of one or more topics on several consumers at once.
+ *
+ * The beginning and end offsets of every partition are captured once, up front. A partition
+ * holding more than an even share of the records is split into up to {@code maxSplits}
+ * contiguous offset ranges, so one hot partition can be read by several consumers. The ranges
+ * are spread over the threads by record count, and each thread assigns its share to its own
+ * consumer and streams every range into that range's sink until the range's end. A consumer
+ * cannot read two ranges of the same partition at once, so a thread holding several works
+ * through them in turn. Each range's sink holds its own buffers and writer, so a thread
+ * also opens at most {@link #MAX_OPEN_RANGES} ranges at a time. Records appended after the
+ * snapshot are not exported.
+ *
+ * {@link #stop()} may be called from any thread; every consumer finishes its current batch
+ * and the export returns with what was written so far.
+ */
+public class TopicExport {
+
+    /** Most ranges, and so sinks, one thread reads at a time. */
+    public static final int MAX_OPEN_RANGES = 16;
+
+    /** The offsets {@code [begin, end)} of one partition; {@code whole} if the partition was not split. */
+    public record Range(TopicPartition partition, long begin, long end, boolean whole) {
+        long size() {
+            return end - begin;
+        }
+    }
+
+    private final Supplier<Consumer<byte[], byte[]>> consumers;
+    private final List<String> topics;
+    private final int threads;
+    private final int maxSplits;
+    private final RoutingSink.SinkFactory<Range> sinks;
+    private List<Range> ranges = List.of();
+    private final List<ConsumeLoop> active = new ArrayList<>();
+    private volatile boolean stopping;
+
+    private long records;
+    private long bytes;
+    private long elapsedNanos;
+
+    /**
+     * @param consumers creates one unsubscribed consumer per thread
+     * @param maxSplits most ranges a single partition is split into; 1 reads every partition whole
+     * @param sinks     opens the output of one range; called on the thread that exports it
+     */
+    public TopicExport(Supplier<Consumer<byte[], byte[]>> consumers, List<String> topics, int threads, int maxSplits,
+                       RoutingSink.SinkFactory<Range> sinks) {
+        this.consumers = consumers;
+        this.topics = topics;
+        this.threads = threads;
+        this.maxSplits = maxSplits;
+        this.sinks = sinks;
+    }
+
+    public void run() throws IOException {
+        long start = System.nanoTime();
+        Map<TopicPartition, Long> beginning;
+        Map<TopicPartition, Long> end;
+        try (Consumer<byte[], byte[]> consumer = consumers.get()) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (String topic : topics) {
+                for (PartitionInfo info : consumer.partitionsFor(topic)) {
+                    partitions.add(new TopicPartition(topic, info.partition()));
+                }
+            }
+            beginning = consumer.beginningOffsets(partitions);
+            end = consumer.endOffsets(partitions);
+        }
+
+        ranges = split(beginning, end);
+        List<List<Range>> shares = balance(ranges);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(shares.size(), 1));
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (List<Range> share : shares) {
+                results.add(pool.submit(() -> {
+                    export(share);
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while exporting " + topics);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Export of " + topics + " failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    /** One-line throughput summary over all threads. */
+    public String summary() {
+        return ConsumeLoop.summary(records, bytes, elapsedNanos);
+    }
+
+    /** Makes every consumer of a running export stop after its current batch. */
+    public void stop() {
+        stopping = true;
+        synchronized (active) {
+            for (ConsumeLoop loop : active) {
+                loop.stop();
+            }
+        }
+    }
+
+    /** The ranges of the last run, in partition and offset order. */
+    public List<Range> ranges() {
+        return ranges;
+    }
+
+    private void export(List<Range> share) throws IOException {
+        try (Consumer<byte[], byte[]> consumer = consumers.get()) {
+            for (Map<TopicPartition, Range> round : rounds(share)) {
+                if (stopping) {
+                    break;
+                }
+                consumer.assign(round.keySet());
+                Map<TopicPartition, Long> stopOffsets = new HashMap<>();
+                for (Range range : round.values()) {
+                    consumer.seek(range.partition(), range.begin());
+                    stopOffsets.put(range.partition(), range.end());
+                }
+                ConsumeLoop loop;
+                try (RecordSink sink = new RoutingSink<>(round::get, sinks)) {
+                    loop = new ConsumeLoop(consumer, sink, 0, 0, false);
+                    loop.stopAt(stopOffsets);
+                    synchronized (active) {
+                        active.add(loop);
+                    }
+                    if (stopping) {
+                        loop.stop();
+                    }
+                    try {
+                        loop.run();
+                    } finally {
+                        synchronized (active) {
+                            active.remove(loop);
+                        }
+                    }
+                }
+                // Drops the paused state as well, in case a later round reads the same partition.
+                consumer.unsubscribe();
+                count(loop);
+            }
+        }
+    }
+
+    private synchronized void count(ConsumeLoop loop) {
+        records += loop.records();
+        bytes += loop.bytes();
+    }
+
+    /** Splits the non-empty partitions so that none holds much more than an even share per thread. */
+    private List<Range> split(Map<TopicPartition, Long> beginning, Map<TopicPartition, Long> end) {
+        long total = 0;
+        for (TopicPartition partition : end.keySet()) {
+            total += Math.max(end.get(partition) - beginning.get(partition), 0);
+        }
+        long share = Math.max((total + threads - 1) / threads, 1);
+
+        List<Range> ranges = new ArrayList<>();
+        for (TopicPartition partition : end.keySet()) {
+            long begin = beginning.get(partition);
+            long size = end.get(partition) - begin;
+            if (size <= 0) {
+                continue;
+            }
+            int pieces = (int) Math.min(maxSplits, (size + share - 1) / share);
+            for (int i = 0; i < pieces; i++) {
+                ranges.add(new Range(partition, begin + size * i / pieces, begin + size * (i + 1) / pieces, pieces == 1));
+            }
+        }
+        ranges.sort(Comparator.comparing((Range r) -> r.partition().topic())
+                .thenComparingInt(r -> r.partition().partition())
+                .thenComparingLong(Range::begin));
+        return ranges;
+    }
+
+    /** Spreads the ranges over the threads, largest first onto the least loaded. */
+    private List<List<Range>> balance(List<Range> ranges) {
+        List<Range> bySize = new ArrayList<>(ranges);
+        bySize.sort(Comparator.comparingLong(Range::size).reversed());
+
+        int count = Math.min(threads, bySize.size());
+        List<List<Range>> shares = new ArrayList<>();
+        long[] load = new long[count];
+        for (int i = 0; i < count; i++) {
+            shares.add(new ArrayList<>());
+        }
+        for (Range range : bySize) {
+            int least = 0;
+            for (int i = 1; i < count; i++) {
+                if (load[i] < load[least]) {
+                    least = i;
+                }
+            }
+            shares.get(least).add(range);
+            load[least] += range.size();
+        }
+        return shares;
+    }
+
+    /** Groups a thread's ranges into rounds of at most {@link #MAX_OPEN_RANGES}, with one range per partition. */
+    private static List<Map<TopicPartition, Range>> rounds(List<Range> share) {
+        List<Map<TopicPartition, Range>> rounds = new ArrayList<>();
+        for (Range range : share) {
+            Map<TopicPartition, Range> round = null;
+            for (Map<TopicPartition, Range> candidate : rounds) {
+                if (candidate.size() < MAX_OPEN_RANGES && !candidate.containsKey(range.partition())) {
+                    round = candidate;
+                    break;
+                }
+            }
+            if (round == null) {
+                round = new HashMap<>();
+                rounds.add(round);
+            }
+            round.put(range.partition(), range);
+        }
+        return rounds;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConsumeLoopTest {
+
+    private static final String TOPIC = "events";
+    private static final TopicPartition P0 = new TopicPartition(TOPIC, 0);
+    private static final TopicPartition P1 = new TopicPartition(TOPIC, 1);
+
+    @Test
+    void fromTimeSeeksEveryPartitionToItsFirstRecordAtOrAfter() {
+        TimeIndexedConsumer consumer = consumer();
+        new ConsumeLoop(consumer, new CollectingSink(), 0, 0, false).assignTimeRange(List.of(TOPIC), 200L, null);
+
+        assertEquals(1, consumer.position(P0));
+        assertEquals(1, consumer.position(P1));
+    }
+
+    @Test
+    void partitionWithoutRecordsAfterFromTimeStartsAtItsEnd() {
+        TimeIndexedConsumer consumer = consumer();
+        new ConsumeLoop(consumer, new CollectingSink(), 0, 0, false).assignTimeRange(List.of(TOPIC), 320L, null);
+
+        assertEquals(3, consumer.position(P0));
+        assertEquals(2, consumer.position(P1));
+    }
+
+    @Test
+    void toTimeStopsEachPartitionBeforeItsFirstNewerRecord() throws IOException {
+        TimeIndexedConsumer consumer = consumer();
+        CollectingSink sink = new CollectingSink();
+        ConsumeLoop loop = new ConsumeLoop(consumer, sink, 0, 1_000, false);
+        loop.assignTimeRange(List.of(TOPIC), 200L, 300L);
+
+        assertEquals(1, consumer.position(P0));
+        assertEquals(1, consumer.position(P1));
+
+        consumer.addRecords();
+        loop.run();
+
+        assertEquals(List.of(1L, 2L), sink.offsets.get(P0));
+        assertEquals(List.of(1L), sink.offsets.get(P1));
+    }
+
+    /** P0 holds records at 100, 200 and 300 ms, P1 at 150, 250 and 350 ms. */
+    private static TimeIndexedConsumer consumer() {
+        TimeIndexedConsumer consumer = new TimeIndexedConsumer();
+        consumer.timestamps.put(P0, List.of(100L, 200L, 300L));
+        consumer.timestamps.put(P1, List.of(150L, 250L, 350L));
+        consumer.updatePartitions(TOPIC, List.of(
+                new PartitionInfo(TOPIC, 0, null, null, null),
+                new PartitionInfo(TOPIC, 1, null, null, null)));
+        consumer.updateBeginningOffsets(Map.of(P0, 0L, P1, 0L));
+        consumer.updateEndOffsets(Map.of(P0, 3L, P1, 3L));
+        return consumer;
+    }
+
+    /**
+     * A MockConsumer with a time index over its records, whose {@code seekToEnd} treats an
+     * empty collection as every assigned partition, as KafkaConsumer does.
+     */
+    private static final class TimeIndexedConsumer extends MockConsumer<byte[], byte[]> {
+
+        final Map<TopicPartition, List<Long>> timestamps = new HashMap<>();
+
+        TimeIndexedConsumer() {
+            super(OffsetResetStrategy.EARLIEST);
+        }
+
+        void addRecords() {
+            timestamps.forEach((partition, times) -> {
+                for (int offset = 0; offset < times.size(); offset++) {
+                    addRecord(new ConsumerRecord<>(partition.topic(), partition.partition(), offset, times.get(offset),
+                            TimestampType.CREATE_TIME, 0, 0, null, new byte[0], new RecordHeaders(), Optional.empty()));
+                }
+            });
+        }
+
+        @Override
+        public synchronized Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes(Map<TopicPartition, Long> query) {
+            Map<TopicPartition, OffsetAndTimestamp> result = new HashMap<>();
+            query.forEach((partition, timestamp) -> {
+                List<Long> times = timestamps.get(partition);
+                OffsetAndTimestamp found = null;
+                for (int offset = 0; offset < times.size() && found == null; offset++) {
+                    if (times.get(offset) >= timestamp) {
+                        found = new OffsetAndTimestamp(offset, times.get(offset));
+                    }
+                }
+                result.put(partition, found);
+            });
+            return result;
+        }
+
+        @Override
+        public synchronized void seekToEnd(Collection<TopicPartition> partitions) {
+            super.seekToEnd(partitions.isEmpty() ? assignment() : partitions);
+        }
+    }
+
+    private static final class CollectingSink implements RecordSink {
+
+        final Map<TopicPartition, List<Long>> offsets = new HashMap<>();
+
+        @Override
+        public void write(TopicPartition partition, List<ConsumerRecord<byte[], byte[]>> records) {
+            for (ConsumerRecord<byte[], byte[]> record : records) {
+                offsets.computeIfAbsent(partition, p -> new ArrayList<>()).add(record.offset());
+            }
+        }
+
+        @Override
+        public void endBatch() {
+        }
+
+        @Override
+        public Map<TopicPartition, Long> durableOffsets(boolean wait) {
+            return Map.of();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.kafka;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonAvroConverterTest {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final Schema SCHEMA = new Schema.Parser().parse("""
+            {"type": "record", "name": "Change", "namespace": "test", "fields": [
+              {"name": "number", "type": ["null", "int", "long"], "default": null},
+              {"name": "real", "type": ["null", "long", "double"], "default": null},
+              {"name": "text", "type": ["null", "long", "string"], "default": null},
+              {"name": "status", "type": ["null", {"type": "enum", "name": "Status", "symbols": ["NEW", "PAID"]}, "string"],
+               "default": null},
+              {"name": "coerced", "type": ["null", "int"], "default": null},
+              {"name": "flag", "type": ["null", "string", "boolean"], "default": null},
+              {"name": "list", "type": ["null", "string", {"type": "array", "items": "long"}], "default": null},
+              {"name": "party", "type": ["null",
+                {"type": "record", "name": "Person", "fields": [{"name": "name", "type": "string"},
+                                                                {"name": "age", "type": "int", "default": 0}]},
+                {"type": "record", "name": "Company", "fields": [{"name": "vat", "type": "string"}]}],
+               "default": null},
+              {"name": "tagged", "type": ["null",
+                {"type": "record", "name": "Tag", "fields": [{"name": "label", "type": "string"}]},
+                {"type": "map", "values": "long"}],
+               "default": null}
+            ]}""");
+
+    private final JsonAvroConverter converter = JsonAvroConverter.compile(SCHEMA, false);
+
+    @Test
+    void integersPickIntWhenTheyFitElseLong() throws IOException {
+        assertEquals(5, field("number", "5"));
+        assertEquals(5_000_000_000L, field("number", "5000000000"));
+    }
+
+    @Test
+    void numbersPickTheirOwnKindOfBranch() throws IOException {
+        assertEquals(3L, field("real", "3"));
+        assertEquals(1.5, field("real", "1.5"));
+    }
+
+    @Test
+    void textPicksTextBranches() throws IOException {
+        assertEquals("x", field("text", "\"x\""));
+        assertEquals(7L, field("text", "7"));
+    }
+
+    @Test
+    void enumBranchTakesOnlyItsSymbols() throws IOException {
+        GenericData.EnumSymbol paid = assertInstanceOf(GenericData.EnumSymbol.class, field("status", "\"PAID\""));
+        assertEquals("PAID", paid.toString());
+        assertEquals("REFUNDED", field("status", "\"REFUNDED\""));
+    }
+
+    @Test
+    void booleansAndArraysPickTheirBranch() throws IOException {
+        assertEquals(true, field("flag", "true"));
+        assertEquals("yes", field("flag", "\"yes\""));
+        GenericData.Array<?> list = assertInstanceOf(GenericData.Array.class, field("list", "[1, 2]"));
+        assertEquals(2, list.size());
+        assertEquals(1L, list.get(0));
+    }
+
+    @Test
+    void valueNoBranchTakesIsRejected() {
+        IllegalArgumentException text = assertThrows(IllegalArgumentException.class, () -> field("coerced", "\"abc\""));
+        assertEquals("No branch of union [null, int] takes abc", text.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> field("coerced", "{\"a\": 1}"));
+        assertThrows(IllegalArgumentException.class, () -> field("number", "[1]"));
+    }
+
+    @Test
+    void nullPicksNoBranch() throws IOException {
+        assertNull(field("number", "null"));
+        assertNull(field("party", "null"));
+    }
+
+    @Test
+    void objectsPickTheFirstRecordWithItsRequiredFields() throws IOException {
+        GenericRecord company = assertInstanceOf(GenericRecord.class, field("party", "{\"vat\": \"X1\"}"));
+        assertEquals("Company", company.getSchema().getName());
+        GenericRecord person = assertInstanceOf(GenericRecord.class, field("party", "{\"extra\": 1, \"name\": \"Ada\"}"));
+        assertEquals("Person", person.getSchema().getName());
+        assertEquals("Ada", person.get("name"));
+        assertEquals(0, person.get("age"));
+        GenericRecord both = assertInstanceOf(GenericRecord.class, field("party", "{\"vat\": \"X1\", \"name\": \"Acme\"}"));
+        assertEquals("Person", both.getSchema().getName());
+    }
+
+    @Test
+    void objectsWithoutAMatchingRecordPickTheMap() throws IOException {
+        assertInstanceOf(GenericRecord.class, field("tagged", "{\"label\": \"a\"}"));
+        Map<?, ?> map = assertInstanceOf(Map.class, field("tagged", "{\"count\": 3}"));
+        assertEquals(3L, map.get("count"));
+    }
+
+    @Test
+    void wrapperSelectsTheNamedBranch() throws IOException {
+        assertEquals(5L, field("number", "{\"long\": 5}"));
+        assertEquals("7", field("text", "{\"string\": \"7\"}"));
+        GenericRecord company = assertInstanceOf(GenericRecord.class, field("party", "{\"test.Company\": {\"vat\": \"X1\"}}"));
+        assertEquals("Company", company.getSchema().getName());
+        GenericRecord person = assertInstanceOf(GenericRecord.class, field("party", "{\"Person\": {\"name\": \"Ada\"}}"));
+        assertEquals("Person", person.getSchema().getName());
+    }
+
+    @Test
+    void wrapperMustBeTheOnlyField() {
+        assertThrows(IllegalArgumentException.class, () -> field("number", "{\"long\": 5, \"int\": 6}"));
+    }
+
+    @Test
+    void reusedConverterRefillsTheTopLevelRecord() throws IOException {
+        JsonAvroConverter reusing = JsonAvroConverter.compile(SCHEMA, true);
+        Object first = read(reusing, "{\"number\": 1}");
+        Object second = read(reusing, "{\"number\": 2}");
+        assertSame(first, second);
+        assertEquals(2, ((GenericRecord) second).get("number"));
+        assertNull(((GenericRecord) second).get("text"));
+    }
+
+    private Object field(String name, String json) throws IOException {
+        GenericRecord record = (GenericRecord) read(converter, "{\"" + name + "\": " + json + "}");
+        return record.get(name);
+    }
+
+    private static Object read(JsonAvroConverter converter, String json) throws IOException {
+        try (JsonParser parser = JSON.createParser(json)) {
+            parser.nextToken();
+            return converter.read(parser);
+        }
+    }
+}
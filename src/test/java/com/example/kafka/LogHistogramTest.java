@@ -0,0 +1,92 @@
+package com.example.kafka;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogHistogramTest {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LogHistogram histogram = new LogHistogram();
+        assertEquals(0, histogram.percentile(0.5));
+        assertEquals(0, histogram.percentile(1.0));
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LogHistogram histogram = new LogHistogram();
+        for (long v = 0; v < 8; v++) {
+            histogram.record(v);
+        }
+        assertEquals(0, histogram.percentile(0.125));
+        assertEquals(3, histogram.percentile(0.5));
+        assertEquals(6, histogram.percentile(0.875));
+        assertEquals(7, histogram.percentile(1.0));
+    }
+
+    @Test
+    void percentilesAreWithinBucketPrecision() {
+        LogHistogram histogram = new LogHistogram();
+        for (long v = 1; v <= 10_000; v++) {
+            histogram.record(v);
+        }
+        assertWithinPrecision(5_000, histogram.percentile(0.5));
+        assertWithinPrecision(9_000, histogram.percentile(0.9));
+        assertWithinPrecision(9_900, histogram.percentile(0.99));
+        assertEquals(10_000, histogram.percentile(1.0));
+        assertEquals(10_000, histogram.count());
+        assertEquals(50_005_000, histogram.sum());
+        assertEquals(10_000, histogram.max());
+    }
+
+    @Test
+    void percentileNeverExceedsMax() {
+        LogHistogram histogram = new LogHistogram();
+        histogram.record(1_000);
+        assertEquals(1_000, histogram.percentile(0.5));
+        assertEquals(1_000, histogram.percentile(0.99));
+    }
+
+    @Test
+    void lowQuantileReportsSmallestBucket() {
+        LogHistogram histogram = new LogHistogram();
+        histogram.record(5);
+        histogram.record(1_000_000);
+        assertEquals(5, histogram.percentile(0.0));
+        assertEquals(5, histogram.percentile(0.5));
+        assertEquals(1_000_000, histogram.percentile(0.51));
+    }
+
+    @Test
+    void negativeValuesRecordAsZero() {
+        LogHistogram histogram = new LogHistogram();
+        histogram.record(-42);
+        assertEquals(1, histogram.count());
+        assertEquals(0, histogram.sum());
+        assertEquals(0, histogram.percentile(1.0));
+    }
+
+    @Test
+    void bucketsCoverTheLongRange() {
+        assertEquals(487, LogHistogram.bucket(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LogHistogram.upperBound(LogHistogram.bucket(Long.MAX_VALUE)));
+        long[] samples = {0, 1, 7, 8, 9, 15, 16, 18, 1_000, 123_456_789, 1L << 40, Long.MAX_VALUE / 3};
+        int previous = -1;
+        for (long v : samples) {
+            int bucket = LogHistogram.bucket(v);
+            assertTrue(bucket > previous, "buckets grow with values at " + v);
+            assertTrue(LogHistogram.upperBound(bucket) >= v, "upper bound covers " + v);
+            assertTrue(bucket == 0 || LogHistogram.upperBound(bucket - 1) < v, "lower bucket excludes " + v);
+            previous = bucket;
+        }
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 8,
+                "expected " + expected + " within 12.5%, was " + actual);
+    }
+}
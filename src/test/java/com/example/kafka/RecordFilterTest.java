@@ -0,0 +1,163 @@
+package com.example.kafka;
+
+import org.apache.avro.Schema;
+import org.apache.avro.util.Utf8;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordFilterTest {
+
+    private static final Map<String, Object> ORDER = Map.of(
+            "status", new Utf8("FAILED"),
+            "region", "eu-west",
+            "amount", 1_000,
+            "total", 5_000_000_000L,
+            "price", 999.5,
+            "gift", false,
+            "user", Map.of("id", new Utf8("test-17"), "name", "Ada"));
+
+    @Test
+    void comparesStringsAgainstUtf8AndString() {
+        assertTrue(test("value.status == \"FAILED\"", ORDER));
+        assertFalse(test("value.status == \"FAILE\"", ORDER));
+        assertTrue(test("value.region == 'eu-west'", ORDER));
+        assertTrue(test("value.status startsWith \"FA\" && value.status endsWith \"ED\"", ORDER));
+        assertTrue(test("value.region contains \"-we\"", ORDER));
+        assertTrue(test("value.user.id matches \"test-[0-9]+\"", ORDER));
+        assertFalse(test("value.user.id matches \"test\"", ORDER));
+        assertTrue(test("value.status > \"ABC\" && value.status < \"Z\"", ORDER));
+    }
+
+    @Test
+    void comparesNumbersAcrossTypes() {
+        assertTrue(test("value.amount >= 1000", ORDER));
+        assertFalse(test("value.amount > 1000", ORDER));
+        assertTrue(test("value.amount == 1000.0", ORDER));
+        assertTrue(test("value.total > 4294967296", ORDER));
+        assertTrue(test("value.price < 1000", ORDER));
+        assertTrue(test("value.price >= 999.5", ORDER));
+        assertFalse(test("value.status > 1", ORDER));
+    }
+
+    @Test
+    void notEqualsIsTheNegationOfEquals() {
+        assertTrue(test("value.missing == null", ORDER));
+        assertFalse(test("value.missing != null", ORDER));
+        assertTrue(test("value.status != null", ORDER));
+        assertTrue(test("value.missing != \"FAILED\"", ORDER));
+        assertTrue(test("value.missing != 5", ORDER));
+        assertFalse(test("value.status != \"FAILED\"", ORDER));
+        assertTrue(test("value.missing == value.other", ORDER));
+        assertTrue(test("value.missing != value.status", ORDER));
+    }
+
+    @Test
+    void otherComparisonsWithNullAreFalse() {
+        for (String op : List.of("<", "<=", ">", ">=")) {
+            assertFalse(test("value.missing " + op + " 5", ORDER), op);
+            assertFalse(test("value.missing " + op + " \"a\"", ORDER), op);
+            assertFalse(test("value.missing " + op + " value.amount", ORDER), op);
+            assertTrue(test("!(value.missing " + op + " 5)", ORDER), op);
+        }
+        for (String op : List.of("startsWith", "endsWith", "contains", "matches")) {
+            assertFalse(test("value.missing " + op + " \"a\"", ORDER), op);
+            assertFalse(test("headers.missing " + op + " \"a\"", ORDER), op);
+        }
+        assertFalse(test("value.missing == 5", ORDER));
+        assertFalse(test("value.user.missing.deeper == \"x\"", ORDER));
+    }
+
+    @Test
+    void andBindsTighterThanOr() {
+        Map<String, Object> value = Map.of("a", 1L, "b", 0L, "c", 0L);
+        assertTrue(test("value.a == 1 || value.b == 1 && value.c == 1", value));
+        assertFalse(test("(value.a == 1 || value.b == 1) && value.c == 1", value));
+        assertFalse(test("!value.a == 1 || value.b == 1", value));
+        assertTrue(test("!(value.b == 1) && !(value.c == 1)", value));
+    }
+
+    @Test
+    void bareOperandsAreTruthy() {
+        assertTrue(test("value.status", ORDER));
+        assertFalse(test("value.gift", ORDER));
+        assertFalse(test("value.missing", ORDER));
+        assertTrue(test("true && !false", ORDER));
+    }
+
+    @Test
+    void readsKeyHeadersAndMetadata() {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add("source", "stream".getBytes(StandardCharsets.UTF_8));
+        headers.add("source", "batch".getBytes(StandardCharsets.UTF_8));
+        ConsumerRecord<byte[], byte[]> raw = new ConsumerRecord<>("orders", 3, 42L, 1_700_000_000_000L,
+                TimestampType.CREATE_TIME, 5, 0, "eu-17".getBytes(StandardCharsets.UTF_8), new byte[0],
+                headers, Optional.empty());
+        RecordView view = view(ORDER).reset(raw);
+
+        assertTrue(compile("key startsWith \"eu-\"").test(view));
+        assertTrue(compile("headers.source == 'batch'").test(view));
+        assertTrue(compile("headers.missing == null").test(view));
+        assertTrue(compile("topic == \"orders\" && partition == 3 && offset >= 42").test(view));
+        assertTrue(compile("timestamp > 1600000000000").test(view));
+    }
+
+    @Test
+    void rejectsMalformedExpressions() {
+        for (String expression : List.of("", "value.a ==", "(value.a == 1", "value.a == 1)",
+                "value.a == 'x", "value.a # 1", "amount == 1", "value.a == 1 value.b")) {
+            assertThrows(IllegalArgumentException.class, () -> compile(expression), expression);
+        }
+    }
+
+    @Test
+    void listsValuePathsOnce() {
+        assertEquals(List.of("user.id", "amount"),
+                RecordFilter.valuePaths("value.user.id == 'x' && (value.amount > 2 || value.user.id != 'y') && key == 'k'"));
+        assertEquals(List.of(), RecordFilter.valuePaths("headers.source == 'batch'"));
+    }
+
+    @Test
+    void resolvesPathsThroughRecordsMapsAndUnions() {
+        Schema schema = new Schema.Parser().parse("""
+                {"type": "record", "name": "Order", "fields": [
+                  {"name": "status", "type": "string"},
+                  {"name": "user", "type": ["null", {"type": "record", "name": "User", "fields": [
+                    {"name": "id", "type": "string"}]}]},
+                  {"name": "attributes", "type": {"type": "map", "values": "string"}}
+                ]}""");
+        assertTrue(RecordFilter.resolves("status", schema));
+        assertTrue(RecordFilter.resolves("user.id", schema));
+        assertTrue(RecordFilter.resolves("attributes.anything", schema));
+        assertFalse(RecordFilter.resolves("user.name", schema));
+        assertFalse(RecordFilter.resolves("status.length", schema));
+        assertFalse(RecordFilter.resolves("attributes.a.b", schema));
+    }
+
+    private static RecordFilter compile(String expression) {
+        return RecordFilter.compile(expression);
+    }
+
+    private static boolean test(String expression, Map<String, Object> value) {
+        ConsumerRecord<byte[], byte[]> raw = new ConsumerRecord<>("orders", 0, 0L, null, new byte[0]);
+        return compile(expression).test(view(value).reset(raw));
+    }
+
+    private static RecordView view(Map<String, Object> value) {
+        Map<String, Object> copy = new HashMap<>(value);
+        return new RecordView(new StringDeserializer(), (topic, bytes) -> copy);
+    }
+}